@@ -0,0 +1,164 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponseException;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+
+/**
+ * Refreshes the access token of registered credentials on a background thread,
+ * a configurable delay before it expires, so that requests never wait for a
+ * token refresh. A failed refresh is retried after a short delay, unless the
+ * token server rejected the credential (4xx, e.g. a revoked refresh token):
+ * the credential is then unregistered. The number of refreshes, of failures
+ * and the refresh latency are recorded.
+ */
+public class CredentialRefresher {
+
+	private static final long RETRY_DELAY_MILLIS = 30000;
+
+	private final long refreshAheadMillis;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Set<Credential> registered = ConcurrentHashMap.newKeySet();
+
+	private final Map<Credential, ScheduledFuture<?>> refreshes = new ConcurrentHashMap<>();
+
+	private final AtomicLong refreshCount = new AtomicLong();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+	private volatile long lastLatencyNanos;
+
+	public CredentialRefresher(long refreshAheadSeconds) {
+		this.refreshAheadMillis = TimeUnit.SECONDS.toMillis(refreshAheadSeconds);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "google-credential-refresher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Keep the access token of the credential fresh, refreshing it before it
+	 * expires. Credentials which can't get a new token (without refresh token
+	 * nor service account key) are ignored.
+	 */
+	public void register(Credential credential) {
+		if (canRefresh(credential)) {
+			registered.add(credential);
+			schedule(credential, nextRefreshDelay(credential));
+		}
+	}
+
+	/**
+	 * A service account credential gets its tokens from its key, without any
+	 * refresh token.
+	 */
+	@SuppressWarnings("deprecation")
+	private static boolean canRefresh(Credential credential) {
+		return credential.getRefreshToken() != null || (credential instanceof GoogleCredential
+		        && ((GoogleCredential) credential).getServiceAccountPrivateKey() != null);
+	}
+
+	public void unregister(Credential credential) {
+		registered.remove(credential);
+		ScheduledFuture<?> refresh = refreshes.remove(credential);
+		if (refresh != null) {
+			refresh.cancel(false);
+		}
+	}
+
+	public boolean isRegistered(Credential credential) {
+		return registered.contains(credential);
+	}
+
+	public void shutdown() {
+		registered.clear();
+		refreshes.clear();
+		scheduler.shutdownNow();
+	}
+
+	private void schedule(Credential credential, long delayMillis) {
+		if (scheduler.isShutdown() || !registered.contains(credential)) {
+			return;
+		}
+		refreshes.put(credential, scheduler.schedule(() -> refresh(credential), delayMillis, TimeUnit.MILLISECONDS));
+		if (!registered.contains(credential)) {
+			// unregistered meanwhile
+			unregister(credential);
+		}
+	}
+
+	private void refresh(Credential credential) {
+		if (!registered.contains(credential)) {
+			return;
+		}
+		long start = System.nanoTime();
+		boolean refreshed;
+		boolean rejected = false;
+		try {
+			refreshed = credential.refreshToken();
+		} catch (TokenResponseException e) {
+			refreshed = false;
+			rejected = e.getStatusCode() >= 400 && e.getStatusCode() < 500;
+		} catch (IOException | RuntimeException e) {
+			refreshed = false;
+		}
+		lastLatencyNanos = System.nanoTime() - start;
+		totalLatencyNanos.addAndGet(lastLatencyNanos);
+		if (refreshed) {
+			refreshCount.incrementAndGet();
+			schedule(credential, nextRefreshDelay(credential));
+		} else if (rejected) {
+			// retrying won't help
+			unregister(credential);
+			failureCount.incrementAndGet();
+		} else {
+			failureCount.incrementAndGet();
+			schedule(credential, RETRY_DELAY_MILLIS);
+		}
+	}
+
+	private long nextRefreshDelay(Credential credential) {
+		Long expiresInSeconds = credential.getExpiresInSeconds();
+		if (credential.getAccessToken() == null || expiresInSeconds == null) {
+			return 0;
+		}
+		long expiresInMillis = TimeUnit.SECONDS.toMillis(expiresInSeconds);
+		if (expiresInMillis <= refreshAheadMillis) {
+			// short-lived token: refresh it halfway rather than in a loop
+			return Math.max(0, expiresInMillis / 2);
+		}
+		return expiresInMillis - refreshAheadMillis;
+	}
+
+	public long getRefreshCount() {
+		return refreshCount.get();
+	}
+
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	public long getLastRefreshLatencyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(lastLatencyNanos);
+	}
+
+	public long getAverageRefreshLatencyMillis() {
+		long attempts = refreshCount.get() + failureCount.get();
+		return attempts == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / attempts);
+	}
+}
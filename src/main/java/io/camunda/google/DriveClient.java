@@ -0,0 +1,524 @@
+package io.camunda.google;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
+import com.google.api.client.http.FileContent;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.drive.model.FileList;
+import com.google.api.services.sheets.v4.Sheets;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.BatchResult;
+import io.camunda.google.util.BoundedExecutor;
+import io.camunda.google.util.ExpiringCache;
+import io.camunda.google.util.PageIterator;
+
+/**
+ * Drive operations on the files of one user, with the clients and the
+ * configuration of that user. Instances are thread-safe and keep their own
+ * folder cache; they share the HTTP transport, the JSON factory and the
+ * transfer pool. {@link DriveUtils} delegates to the default instance.
+ */
+public class DriveClient {
+
+    private static final String FOLDER_MIME_TYPE = "application/vnd.google-apps.folder";
+
+    private static final String PATH_SEPARATOR = "/";
+
+    /**
+     * Prefix of the folder cache keys of the paths anchored at the root of My
+     * Drive, the other keys being the paths found anywhere.
+     */
+    private static final String ROOTED_KEY_PREFIX = "/";
+
+    private final GoogleClients clients;
+
+    private final GoogleWsConfig config;
+
+    private final BoundedExecutor transferExecutor;
+
+    /**
+     * Page prefetches wait on a single request each, they must not take the
+     * transfer slots of the uploads and downloads.
+     */
+    private final BoundedExecutor prefetchExecutor;
+
+    private final ConcurrentMap<String, CompletableFuture<String>> folderResolutions = new ConcurrentHashMap<>();
+
+    private final ExpiringCache<String, String> folderCache;
+
+    /**
+     * @param clients the clients of the user
+     * @param config  the configuration of the user
+     */
+    public DriveClient(GoogleClients clients, GoogleWsConfig config) {
+        this.clients = clients;
+        this.config = config;
+        this.folderCache = new ExpiringCache<>(config.getFolderCacheSize(), config.getFolderCacheTtlMillis());
+        this.transferExecutor = new BoundedExecutor("drive-transfer", config.getTransferConcurrency(),
+                config.isPreferVirtualThreads());
+        this.prefetchExecutor = new BoundedExecutor("drive-prefetch", Runtime.getRuntime().availableProcessors(),
+                config.isPreferVirtualThreads());
+    }
+
+    /**
+     * @return the client of the files of the default user
+     */
+    public static DriveClient getDefault() {
+        return GoogleClients.getDefault().driveClient();
+    }
+
+    /**
+     * @param userId the id of the user, see {@link GoogleClients#forUser(String)}
+     * @return the client of the files of the user
+     */
+    public static DriveClient forUser(String userId) {
+        return GoogleClients.forUser(userId).driveClient();
+    }
+
+    public Drive drive() {
+        return clients.drive();
+    }
+
+    public Sheets sheets() {
+        return clients.sheets();
+    }
+
+    public GoogleWsConfig getConfig() {
+        return config;
+    }
+
+    public File getFromDrive(String driveId, String localFileName) throws IOException {
+        return getFromDrive(driveId, Paths.get(localFileName)).toFile();
+    }
+
+    /**
+     * Download a file straight to disk, without buffering it in memory.
+     *
+     * @param driveId the id of the Drive file
+     * @param target  the local file, created or overwritten
+     * @return the local file
+     */
+    public Path getFromDrive(String driveId, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            getFromDrive(driveId, Channels.newOutputStream(channel));
+        }
+        return target;
+    }
+
+    /**
+     * Download a file to a stream, in ranged chunks of downloadChunkSize bytes.
+     * When a chunk fails, the download resumes from the last byte written, at
+     * most downloadMaxResumes times.
+     *
+     * @param driveId      the id of the Drive file
+     * @param outputStream the stream to write to, not closed by this method
+     * @return the number of bytes downloaded
+     */
+    public long getFromDrive(String driveId, OutputStream outputStream) throws IOException {
+        CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+        int resumes = 0;
+        while (true) {
+            Drive.Files.Get request = drive().files().get(driveId);
+            request.getMediaHttpDownloader().setDirectDownloadEnabled(false)
+                    .setChunkSize(config.getDownloadChunkSize()).setBytesDownloaded(countingStream.count);
+            try {
+                request.executeMediaAndDownloadTo(countingStream);
+                return countingStream.count;
+            } catch (HttpResponseException e) {
+                if (e.getStatusCode() < 500 || resumes++ >= config.getDownloadMaxResumes()) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                if (resumes++ >= config.getDownloadMaxResumes()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    public String storeInDrive(File file) throws IOException {
+        return storeInDrive(file, null);
+    }
+    public String storeInFolderName(File file, String folderName) throws IOException {
+        String parentId=getFolderIdByName(folderName);
+        return storeInDrive(file, parentId);
+    }
+    public String storeInDrive(File file, String parentId) throws IOException {
+        return storeInDrive(file, parentId, null);
+    }
+
+    /**
+     * Upload a file. Files up to directUploadThreshold bytes are sent in a single
+     * request. Larger files use a resumable upload in chunks of uploadChunkSize
+     * bytes, resumed from the last byte acknowledged by Drive when a chunk fails.
+     *
+     * @param file             the file to upload
+     * @param parentId         the id of the parent folder, may be null
+     * @param progressListener notified of the upload progress, may be null
+     * @return the id of the Drive file
+     */
+    public String storeInDrive(File file, String parentId, MediaHttpUploaderProgressListener progressListener)
+            throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException("File not found: " + file);
+        }
+        Drive drive = drive();
+
+        String mimeType = Files.probeContentType(file.toPath());
+
+        // upload to Google Drive
+        com.google.api.services.drive.model.File fileMetadata = new com.google.api.services.drive.model.File();
+        fileMetadata.setName(file.getName());
+        fileMetadata.setMimeType(mimeType);
+        if (parentId!=null) {
+            fileMetadata.setParents(Collections.singletonList(parentId));
+        }
+
+        FileContent mediaContent = new FileContent(mimeType, file);
+        Drive.Files.Create create = drive.files().create(fileMetadata, mediaContent).setFields("id");
+        MediaHttpUploader uploader = create.getMediaHttpUploader();
+        uploader.setDirectUploadEnabled(file.length() <= config.getDirectUploadThreshold());
+        uploader.setChunkSize(config.getUploadChunkSize());
+        if (progressListener != null) {
+            uploader.setProgressListener(progressListener);
+        }
+        com.google.api.services.drive.model.File driveFile = create.execute();
+
+        return driveFile.getId();
+    }
+
+    /**
+     * Upload several files concurrently, on a pool of transferConcurrency
+     * threads.
+     *
+     * @param files    the files to upload
+     * @param parentId the id of the parent folder, may be null
+     * @return the Drive ids keyed by local path, and the files that failed
+     */
+    public BatchResult<String> storeAllInDrive(Collection<Path> files, String parentId) {
+        Map<String, CompletableFuture<String>> uploads = new LinkedHashMap<>();
+        for (Path file : files) {
+            uploads.put(file.toString(), CompletableFuture.supplyAsync(() -> {
+                try {
+                    return storeInDrive(file.toFile(), parentId);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, transferExecutor));
+        }
+        return collect(uploads);
+    }
+
+    public BatchResult<String> storeAllInFolderName(Collection<Path> files, String folderName)
+            throws IOException {
+        return storeAllInDrive(files, getFolderIdByName(folderName));
+    }
+
+    /**
+     * Download several files concurrently, on a pool of transferConcurrency
+     * threads.
+     *
+     * @param targets the local files keyed by Drive id
+     * @return the local files keyed by Drive id, and the files that failed
+     */
+    public BatchResult<Path> getAllFromDrive(Map<String, Path> targets) {
+        Map<String, CompletableFuture<Path>> downloads = new LinkedHashMap<>();
+        for (Map.Entry<String, Path> target : targets.entrySet()) {
+            downloads.put(target.getKey(), CompletableFuture.supplyAsync(() -> {
+                try {
+                    return getFromDrive(target.getKey(), target.getValue());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, transferExecutor));
+        }
+        return collect(downloads);
+    }
+
+    private static <T> BatchResult<T> collect(Map<String, CompletableFuture<T>> transfers) {
+        BatchResult<T> result = new BatchResult<>();
+        for (Map.Entry<String, CompletableFuture<T>> transfer : transfers.entrySet()) {
+            try {
+                result.addResult(transfer.getKey(), transfer.getValue().join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause()
+                        : e.getCause();
+                result.addFailure(transfer.getKey(), cause instanceof Exception ? (Exception) cause : e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the metadata of a file.
+     *
+     * @param driveId the id of the Drive file
+     * @param fields  the partial response field mask, e.g. "id, name, size", null
+     *                for the default fields
+     * @return the metadata of the file
+     */
+    public com.google.api.services.drive.model.File getFile(String driveId, String fields) throws IOException {
+        Drive.Files.Get get = drive().files().get(driveId);
+        if (fields != null) {
+            get.setFields(fields);
+        }
+        return get.execute();
+    }
+
+    /**
+     * Lazily list the files matching a query, the next page being prefetched
+     * while the current one is consumed.
+     *
+     * @param q      the Drive query, e.g. "name contains 'invoice'", null for all
+     * @param fields the fields of each file, e.g. "id, name", null for the default
+     *               fields
+     * @return the files. Failing calls are thrown as {@link UncheckedIOException}.
+     */
+    public Stream<com.google.api.services.drive.model.File> listFiles(String q, String fields) {
+        Drive drive = drive();
+        String listFields = fields == null ? null : "nextPageToken, files(" + fields + ")";
+        return new PageIterator<FileList, com.google.api.services.drive.model.File>(
+                pageToken -> drive.files().list().setQ(q).setFields(listFields).setPageToken(pageToken).execute(),
+                FileList::getFiles, FileList::getNextPageToken, prefetchExecutor).stream();
+    }
+
+    public String createFolder(String folderName) throws IOException {
+        return createFolder(folderName, null);
+    }
+
+    public String createFolder(String folderName, String parentId) throws IOException {
+        Drive drive = drive();
+        com.google.api.services.drive.model.File fileMetadata = new com.google.api.services.drive.model.File();
+        fileMetadata.setName(folderName);
+        fileMetadata.setMimeType(FOLDER_MIME_TYPE);
+        if (parentId!=null) {
+            fileMetadata.setParents(Collections.singletonList(parentId));
+        }
+        com.google.api.services.drive.model.File file = drive.files().create(fileMetadata)
+                .setFields("id")
+                .execute();
+        // a new folder with this name may change the result of the name and path lookups
+        getFolderCache().invalidateIf(path -> path.equals(folderName) || path.endsWith(PATH_SEPARATOR + folderName));
+        return file.getId();
+    }
+
+    public String getFolderIdByName(String folderName) throws IOException {
+        return getFolderIdByPath(List.of(folderName));
+    }
+
+    /**
+     * Find a folder by its path, e.g. "clients/2026/invoices". All the folders
+     * named like one of the path segments are listed in a single query and the
+     * path is resolved from their parents. The id of the folder found and the ids
+     * of its ancestors on the path are cached for folderCacheTtlMillis.
+     *
+     * @param folderPath the names of the folders, separated by '/'
+     * @return the id of the last folder of the path, or null if not found
+     */
+    public String getFolderIdByPath(String folderPath) throws IOException {
+        return getFolderIdByPath(splitPath(folderPath));
+    }
+
+    private String getFolderIdByPath(List<String> names) throws IOException {
+        if (names.isEmpty()) {
+            return null;
+        }
+        ExpiringCache<String, String> cache = getFolderCache();
+        String cached = cache.get(String.join(PATH_SEPARATOR, names));
+        if (cached != null) {
+            return cached;
+        }
+        List<com.google.api.services.drive.model.File> folders = listFolders(names);
+        List<List<com.google.api.services.drive.model.File>> levels = new ArrayList<>();
+        List<String> parentIds = null;
+        for (String name : names) {
+            List<com.google.api.services.drive.model.File> level = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (com.google.api.services.drive.model.File folder : folders) {
+                if (name.equals(folder.getName()) && (parentIds == null
+                        || (folder.getParents() != null && !Collections.disjoint(parentIds, folder.getParents())))) {
+                    level.add(folder);
+                    ids.add(folder.getId());
+                }
+            }
+            if (ids.isEmpty()) {
+                return null;
+            }
+            levels.add(level);
+            parentIds = ids;
+        }
+        // cache the ancestors of the returned folder, walking up its parents
+        com.google.api.services.drive.model.File child = levels.get(levels.size() - 1).get(0);
+        cache.put(String.join(PATH_SEPARATOR, names), child.getId());
+        for (int i = levels.size() - 2; i >= 0; i--) {
+            com.google.api.services.drive.model.File parent = null;
+            for (com.google.api.services.drive.model.File folder : levels.get(i)) {
+                if (child.getParents() != null && child.getParents().contains(folder.getId())) {
+                    parent = folder;
+                    break;
+                }
+            }
+            if (parent == null) {
+                break;
+            }
+            cache.put(String.join(PATH_SEPARATOR, names.subList(0, i + 1)), parent.getId());
+            child = parent;
+        }
+        return levels.get(levels.size() - 1).get(0).getId();
+    }
+
+    /**
+     * Get the id of a folder path, creating its missing folders. Each level is
+     * looked up among the children of the previous one, starting from the root
+     * of My Drive. Concurrent calls resolving the same path in this JVM wait for
+     * a single lookup or creation, and the resolved ids are cached.
+     *
+     * @param folderPath the names of the folders, separated by '/'
+     * @return the id of the last folder of the path
+     */
+    public String resolveOrCreateFolderPath(String folderPath) throws IOException {
+        List<String> names = splitPath(folderPath);
+        String parentId = null;
+        for (int i = 0; i < names.size(); i++) {
+            parentId = resolveOrCreateFolder(ROOTED_KEY_PREFIX + String.join(PATH_SEPARATOR, names.subList(0, i + 1)),
+                    names.get(i), parentId);
+        }
+        return parentId;
+    }
+
+    private String resolveOrCreateFolder(String path, String name, String parentId) throws IOException {
+        String cached = getFolderCache().get(path);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<String> resolution = new CompletableFuture<>();
+        CompletableFuture<String> pending = folderResolutions.putIfAbsent(path, resolution);
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            String id = findFolder(name, parentId);
+            if (id == null) {
+                id = createFolder(name, parentId);
+            }
+            getFolderCache().put(path, id);
+            resolution.complete(id);
+            return id;
+        } catch (IOException | RuntimeException e) {
+            resolution.completeExceptionally(e);
+            throw e;
+        } finally {
+            folderResolutions.remove(path, resolution);
+        }
+    }
+
+    private String findFolder(String name, String parentId) throws IOException {
+        FileList fileList = drive().files().list()
+                .setQ("mimeType = '" + FOLDER_MIME_TYPE + "' and trashed = false and name = '" + escape(name)
+                        + "' and '" + escape(parentId == null ? "root" : parentId) + "' in parents")
+                .setFields("files(id)").setPageSize(1).execute();
+        if (fileList.getFiles() == null || fileList.getFiles().isEmpty()) {
+            return null;
+        }
+        return fileList.getFiles().get(0).getId();
+    }
+
+    private List<com.google.api.services.drive.model.File> listFolders(Collection<String> names)
+            throws IOException {
+        Drive drive = drive();
+        StringBuilder q = new StringBuilder("mimeType = '" + FOLDER_MIME_TYPE + "' and trashed = false and (");
+        boolean first = true;
+        for (String name : new LinkedHashSet<>(names)) {
+            q.append(first ? "" : " or ").append("name = '").append(escape(name)).append("'");
+            first = false;
+        }
+        q.append(")");
+        List<com.google.api.services.drive.model.File> folders = new ArrayList<>();
+        String pageToken = null;
+        do {
+            FileList fileList = drive.files().list().setQ(q.toString())
+                    .setFields("nextPageToken, files(id, name, parents)").setPageToken(pageToken).execute();
+            folders.addAll(fileList.getFiles());
+            pageToken = fileList.getNextPageToken();
+        } while (pageToken != null);
+        return folders;
+    }
+
+    private static List<String> splitPath(String folderPath) {
+        List<String> names = new ArrayList<>();
+        for (String name : folderPath.split(PATH_SEPARATOR)) {
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("'", "\\'");
+    }
+
+    /**
+     * @return the cache of the folder ids keyed by path, exposing its hit and
+     *         miss counts
+     */
+    public ExpiringCache<String, String> getFolderCache() {
+        return folderCache;
+    }
+}
@@ -1,120 +1,134 @@
 package io.camunda.google;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.security.GeneralSecurityException;
-import java.util.Collections;
-
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.http.InputStreamContent;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import com.google.api.client.googleapis.media.MediaHttpUploaderProgressListener;
 import com.google.api.services.drive.Drive;
-import com.google.api.services.drive.model.FileList;
 import com.google.api.services.sheets.v4.Sheets;
 
+import io.camunda.google.model.BatchResult;
+import io.camunda.google.util.ExpiringCache;
+
+/**
+ * Drive operations on the files of the default user. See {@link DriveClient}
+ * to work with the files of other users.
+ */
 public class DriveUtils {
 
     public static Drive drive() {
-        // Build a new authorized API client service.
-        try {
-            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-            Drive service = new Drive.Builder(HTTP_TRANSPORT, GoogleAuthUtils.JSON_FACTORY,
-                    GoogleAuthUtils.getCredentials(HTTP_TRANSPORT))
-                    .setApplicationName(GoogleAuthUtils.getGoogleWsConfig().getApplicationName()).build();
-            return service;
-        } catch (GeneralSecurityException | IOException e) {
-            throw new RuntimeException(e);
-        }
+        return DriveClient.getDefault().drive();
     }
 
     public static Sheets sheets() {
-        // Build a new authorized API client service.
-        try {
-            final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-            Sheets service = new Sheets.Builder(HTTP_TRANSPORT, GoogleAuthUtils.JSON_FACTORY,
-                    GoogleAuthUtils.getCredentials(HTTP_TRANSPORT))
-                    .setApplicationName(GoogleAuthUtils.getGoogleWsConfig().getApplicationName()).build();
-            return service;
-        } catch (GeneralSecurityException | IOException e) {
-            throw new RuntimeException(e);
-        }
+        return DriveClient.getDefault().sheets();
     }
 
     public static File getFromDrive(String driveId, String localFileName) throws IOException {
-        Drive drive = drive();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        drive.files().get(driveId).executeMediaAndDownloadTo(outputStream);
-        File result = new File(localFileName);
-        try (FileOutputStream fos = new FileOutputStream(result)) {
-            outputStream.writeTo(fos);
-        }
-        return result;
+        return DriveClient.getDefault().getFromDrive(driveId, localFileName);
+    }
+
+    /**
+     * @see DriveClient#getFromDrive(String, Path)
+     */
+    public static Path getFromDrive(String driveId, Path target) throws IOException {
+        return DriveClient.getDefault().getFromDrive(driveId, target);
+    }
+
+    /**
+     * @see DriveClient#getFromDrive(String, OutputStream)
+     */
+    public static long getFromDrive(String driveId, OutputStream outputStream) throws IOException {
+        return DriveClient.getDefault().getFromDrive(driveId, outputStream);
     }
 
     public static String storeInDrive(File file) throws IOException {
-        return storeInDrive(file, null);
+        return DriveClient.getDefault().storeInDrive(file);
     }
     public static String storeInFolderName(File file, String folderName) throws IOException {
-        String parentId=getFolderIdByName(folderName);
-        return storeInDrive(file, parentId);
+        return DriveClient.getDefault().storeInFolderName(file, folderName);
     }
     public static String storeInDrive(File file, String parentId) throws IOException {
-        Drive drive = DriveUtils.drive();
+        return DriveClient.getDefault().storeInDrive(file, parentId);
+    }
 
-        String mimeType = Files.probeContentType(file.toPath());
+    /**
+     * @see DriveClient#storeInDrive(File, String, MediaHttpUploaderProgressListener)
+     */
+    public static String storeInDrive(File file, String parentId, MediaHttpUploaderProgressListener progressListener)
+            throws IOException {
+        return DriveClient.getDefault().storeInDrive(file, parentId, progressListener);
+    }
 
-        // upload to Google Drive
-        com.google.api.services.drive.model.File fileMetadata = new com.google.api.services.drive.model.File();
-        fileMetadata.setName(file.getName());
-        fileMetadata.setMimeType(mimeType);
-        if (parentId!=null) {
-            fileMetadata.setParents(Collections.singletonList(parentId));
-        }
+    /**
+     * @see DriveClient#storeAllInDrive(Collection, String)
+     */
+    public static BatchResult<String> storeAllInDrive(Collection<Path> files, String parentId) {
+        return DriveClient.getDefault().storeAllInDrive(files, parentId);
+    }
 
-        InputStreamContent mediaContent = new InputStreamContent(mimeType, new FileInputStream(file));
-        com.google.api.services.drive.model.File driveFile = drive.files().create(fileMetadata, mediaContent)
-                .setFields("id").execute();
+    public static BatchResult<String> storeAllInFolderName(Collection<Path> files, String folderName)
+            throws IOException {
+        return DriveClient.getDefault().storeAllInFolderName(files, folderName);
+    }
 
-        return driveFile.getId();
+    /**
+     * @see DriveClient#getAllFromDrive(Map)
+     */
+    public static BatchResult<Path> getAllFromDrive(Map<String, Path> targets) {
+        return DriveClient.getDefault().getAllFromDrive(targets);
+    }
+
+    /**
+     * @see DriveClient#getFile(String, String)
+     */
+    public static com.google.api.services.drive.model.File getFile(String driveId, String fields) throws IOException {
+        return DriveClient.getDefault().getFile(driveId, fields);
+    }
+
+    /**
+     * @see DriveClient#listFiles(String, String)
+     */
+    public static Stream<com.google.api.services.drive.model.File> listFiles(String q, String fields) {
+        return DriveClient.getDefault().listFiles(q, fields);
     }
 
     public static String createFolder(String folderName) throws IOException {
-        return createFolder(folderName, null);
+        return DriveClient.getDefault().createFolder(folderName);
     }
 
     public static String createFolder(String folderName, String parentId) throws IOException {
-        Drive drive = DriveUtils.drive();
-        com.google.api.services.drive.model.File fileMetadata = new com.google.api.services.drive.model.File();
-        fileMetadata.setName(folderName);
-        fileMetadata.setMimeType("application/vnd.google-apps.folder");
-        if (parentId!=null) {
-            fileMetadata.setParents(Collections.singletonList(parentId));
-        }
-        try {
-            com.google.api.services.drive.model.File file = drive.files().create(fileMetadata)
-                    .setFields("id")
-                    .execute();
-            return file.getId();
-        } catch (GoogleJsonResponseException e) {
-            // TODO(developer) - handle error appropriately
-            System.err.println("Unable to create folder: " + e.getDetails());
-            throw e;
-        }
+        return DriveClient.getDefault().createFolder(folderName, parentId);
     }
 
     public static String getFolderIdByName(String folderName) throws IOException {
-        Drive drive = DriveUtils.drive();
-        FileList fileList = drive.files()
-                .list().setQ("mimeType = 'application/vnd.google-apps.folder' and name='"+folderName+"'")
-                .execute();
-        for (com.google.api.services.drive.model.File file : fileList.getFiles()) {
-            return file.getId();
-        }
-        return null;
-    }
-}
\ No newline at end of file
+        return DriveClient.getDefault().getFolderIdByName(folderName);
+    }
+
+    /**
+     * @see DriveClient#getFolderIdByPath(String)
+     */
+    public static String getFolderIdByPath(String folderPath) throws IOException {
+        return DriveClient.getDefault().getFolderIdByPath(folderPath);
+    }
+
+    /**
+     * @see DriveClient#resolveOrCreateFolderPath(String)
+     */
+    public static String resolveOrCreateFolderPath(String folderPath) throws IOException {
+        return DriveClient.getDefault().resolveOrCreateFolderPath(folderPath);
+    }
+
+    /**
+     * @return the cache of the folder ids of the default user keyed by path,
+     *         exposing its hit and miss counts
+     */
+    public static ExpiringCache<String, String> getFolderCache() {
+        return DriveClient.getDefault().getFolderCache();
+    }
+}
@@ -0,0 +1,681 @@
+package io.camunda.google;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.services.json.AbstractGoogleJsonClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.BatchDeleteMessagesRequest;
+import com.google.api.services.gmail.model.BatchModifyMessagesRequest;
+import com.google.api.services.gmail.model.Label;
+import com.google.api.services.gmail.model.ListLabelsResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.gmail.model.WatchRequest;
+import com.google.api.services.gmail.model.WatchResponse;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.Attachment;
+import io.camunda.google.model.BatchResult;
+import io.camunda.google.model.Mail;
+import io.camunda.google.model.ReadOptions;
+import io.camunda.google.model.ReceivedMail;
+import io.camunda.google.util.AsciiInputStream;
+import io.camunda.google.util.BoundedExecutor;
+import io.camunda.google.util.LazyHolder;
+import io.camunda.google.util.MimeMessageContent;
+import io.camunda.google.util.PageIterator;
+
+/**
+ * Gmail operations on the mailbox of one user, with the clients and the
+ * configuration of that user. Instances are thread-safe and several of them,
+ * e.g. one per mailbox, can be used concurrently; they share the HTTP
+ * transport, the JSON factory and the attachment download pool.
+ * {@link GmailUtils} delegates to the default instance.
+ */
+public class GmailClient {
+
+	private static final int MAX_IDS_PER_BULK_CALL = 1000;
+
+	private static final String LIST_FIELDS = "nextPageToken,messages(id,threadId)";
+
+	private final GoogleClients clients;
+
+	private final GoogleWsConfig config;
+
+	private final String userId;
+
+	private final BoundedExecutor attachmentExecutor;
+
+	private final BoundedExecutor prefetchExecutor;
+
+	private final LazyHolder<MailSender> mailSender = new LazyHolder<>(() -> new MailSender(this));
+
+	/**
+	 * @param clients the clients of the user
+	 * @param config  the configuration of the user
+	 * @param userId  the Gmail user id of the mailbox, "me" for the authorized
+	 *                user
+	 */
+	public GmailClient(GoogleClients clients, GoogleWsConfig config, String userId) {
+		this.clients = clients;
+		this.config = config;
+		this.userId = userId;
+		this.attachmentExecutor = new BoundedExecutor("gmail-attachments", config.getAttachmentDownloadConcurrency(),
+		        config.isPreferVirtualThreads());
+		this.prefetchExecutor = new BoundedExecutor("gmail-prefetch", Runtime.getRuntime().availableProcessors(),
+		        config.isPreferVirtualThreads());
+	}
+
+	/**
+	 * @return the client of the mailbox of the default user
+	 */
+	public static GmailClient getDefault() {
+		return GoogleClients.getDefault().gmailClient();
+	}
+
+	/**
+	 * @param userId the id of the user, see {@link GoogleClients#forUser(String)}
+	 * @return the client of the mailbox of the user
+	 */
+	public static GmailClient forUser(String userId) {
+		return GoogleClients.forUser(userId).gmailClient();
+	}
+
+	public Gmail gmail() {
+		return clients.gmail();
+	}
+
+	public GoogleWsConfig getConfig() {
+		return config;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @return the sender of the mailbox, whose rate limit all the sends of this
+	 *         client share
+	 */
+	public MailSender getMailSender() {
+		return mailSender.get();
+	}
+
+	public void sendEmail(Mail mail) throws MessagingException, IOException {
+		newSend(mail).execute();
+	}
+
+	/**
+	 * Build the send request of the mail. Below the media send threshold, the
+	 * message is base64url encoded in the request; above, it is written as
+	 * message/rfc822 directly to the upload request body. A body rendered from a
+	 * template, whose size is only known once rendered, is always uploaded, so
+	 * that it is rendered directly to the request body.
+	 */
+	Gmail.Users.Messages.Send newSend(Mail mail) throws MessagingException, IOException {
+		MimeMessage mimeMessage = MailBuilderUtils.buildMimeMessage(mail);
+		long size = estimateSize(mail);
+		long threshold = config.getMediaSendThreshold();
+		if (threshold >= 0 && (size >= threshold || mail.getBodyTemplate() != null)) {
+			Gmail.Users.Messages.Send send = gmail().users().messages().send(userId, null,
+			        new MimeMessageContent(mimeMessage));
+			send.getMediaHttpUploader().setDirectUploadEnabled(true);
+			return send;
+		}
+		return gmail().users().messages().send(userId, GmailUtils.convertToGmailMessage(mimeMessage, size));
+	}
+
+	/**
+	 * Size of the MIME message from its body and attachments, which are base64
+	 * encoded in it.
+	 */
+	private static long estimateSize(Mail mail) {
+		long size = 1024;
+		if (mail.getBody() != null) {
+			size += mail.getBody().length();
+		}
+		if (mail.getAttachments() != null) {
+			for (File attachment : mail.getAttachments()) {
+				size += 256 + attachment.length() / 3 * 4;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Send a mail without blocking the caller.
+	 * 
+	 * @param mail the mail to send
+	 * @return a future completed with the Gmail message id
+	 */
+	public CompletableFuture<String> sendEmailAsync(Mail mail) {
+		return mailSender.get().sendAsync(mail);
+	}
+
+	/**
+	 * Send mails in bulk. MIME messages are built while previous ones are being
+	 * sent, the sends run on a bounded pool and respect the configured rate.
+	 * 
+	 * @param mails the mails to send
+	 * @return one future per mail, completed with its Gmail message id or its
+	 *         failure
+	 */
+	public List<CompletableFuture<String>> sendEmails(Collection<Mail> mails) {
+		return mailSender.get().sendAll(mails);
+	}
+
+	/**
+	 * Send mails in bulk, the stream being consumed as the mails are sent, e.g.
+	 * the mails of a {@link MailMerge}.
+	 * 
+	 * @param mails the mails to send
+	 * @return one future per mail, completed with its Gmail message id or its
+	 *         failure
+	 */
+	public List<CompletableFuture<String>> sendEmails(Stream<Mail> mails) {
+		return mailSender.get().sendAll(mails);
+	}
+
+	public List<Message> readMessages() throws MessagingException, IOException {
+		return readMessages(null, null);
+	}
+
+	public List<Message> readMessages(String folderName) throws MessagingException, IOException {
+		return readMessages(folderName, null);
+	}
+
+	public List<Message> readMessages(boolean unread) throws MessagingException, IOException {
+		return readMessages(null, unread);
+	}
+
+	/**
+	 * @return all the messages matching the folder and read status, an empty list
+	 *         if none
+	 */
+	public List<Message> readMessages(String folderName, Boolean unread) throws MessagingException, IOException {
+		try (Stream<Message> messages = streamMessages(folderName, unread)) {
+			return messages.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	public Stream<Message> streamMessages(String folderName, Boolean unread) {
+		return streamMessages(folderName, unread, config.getPageSize());
+	}
+
+	/**
+	 * Lazily list the messages matching the folder and read status. Pages are
+	 * fetched while the stream is consumed, the next one being prefetched in the
+	 * background, so that large mailboxes are scanned in constant memory. Close
+	 * the stream to stop the prefetching when it is not fully consumed.
+	 * 
+	 * @param folderName the label of the messages, null for all
+	 * @param unread     the read status of the messages, null for all
+	 * @param pageSize   the number of messages to fetch per call (at most 500)
+	 * @return the messages, with only their id and thread id set. Failing calls
+	 *         are thrown as {@link UncheckedIOException}.
+	 */
+	public Stream<Message> streamMessages(String folderName, Boolean unread, long pageSize) {
+		Gmail service = gmail();
+		String q = query(folderName, unread);
+		return new PageIterator<ListMessagesResponse, Message>(
+		        pageToken -> service.users().messages().list(userId).setQ(q).setMaxResults(pageSize)
+		                .setFields(LIST_FIELDS).setPageToken(pageToken).execute(),
+		        ListMessagesResponse::getMessages, ListMessagesResponse::getNextPageToken, prefetchExecutor)
+		        .stream();
+	}
+
+	private String query(String folderName, Boolean unread) {
+		String q = "";
+		if (folderName != null) {
+			q = "label:" + folderName;
+		}
+		if (unread != null) {
+			q += " is:" + (unread ? "unread" : "read");
+		}
+		return q;
+	}
+
+	/**
+	 * @param labelId the id of the label to synchronize, e.g. "INBOX", null for
+	 *                all the messages
+	 * @return an incremental synchronization of the label, keeping its history
+	 *         ids in the tokens directory
+	 */
+	public MailboxSync newMailboxSync(String labelId) throws IOException {
+		return new MailboxSync(this, labelId);
+	}
+
+	/**
+	 * Ask Gmail to publish the changes of the mailbox to a Pub/Sub topic. The
+	 * registration expires after 7 days and must be renewed.
+	 *
+	 * @param topicName the topic, e.g. projects/my-project/topics/gmail, on which
+	 *                  gmail-api-push@system.gserviceaccount.com can publish
+	 * @param labelIds  the labels whose changes are published, null for all
+	 * @return the current history id and the expiration of the registration
+	 */
+	public WatchResponse watch(String topicName, List<String> labelIds) throws IOException {
+		return gmail().users().watch(userId, new WatchRequest().setTopicName(topicName).setLabelIds(labelIds))
+		        .execute();
+	}
+
+	public void stopWatch() throws IOException {
+		gmail().users().stop(userId).execute();
+	}
+
+	/**
+	 * Deliver the changes of a label as soon as Gmail notifies them, from the
+	 * history ids kept in the tokens directory.
+	 *
+	 * @param topicName the Pub/Sub topic Gmail publishes to
+	 * @param labelId   the label to watch, e.g. "INBOX", null for all the messages
+	 * @param source    the source of the notifications published to the topic,
+	 *                  e.g. a {@link PubSubNotificationSource}
+	 * @param listener  receives the changes
+	 * @return the started watcher, to close when done
+	 */
+	public MailWatcher watch(String topicName, String labelId, NotificationSource source,
+	        MailWatcher.Listener listener) throws IOException {
+		MailWatcher watcher = new MailWatcher(this, topicName, labelId, newMailboxSync(labelId), source, listener);
+		watcher.start();
+		return watcher;
+	}
+
+	public List<Label> getLabels() throws IOException {
+		Gmail service = gmail();
+		ListLabelsResponse listResponse = service.users().labels().list(userId).execute();
+		return listResponse.getLabels();
+	}
+
+	public ReceivedMail read(String messageId) throws IOException {
+		Gmail service = gmail();
+		Message m = service.users().messages().get(userId, messageId).execute();
+		ReceivedMail mail = getContent(m);
+		return mail;
+	}
+
+	/**
+	 * Read a message, fetching only what the options ask for. With the metadata
+	 * format, the mail only carries its headers; with the minimal format, only
+	 * its ids and labels. With the raw format, the whole message is fetched at
+	 * once and parsed by {@link RawMailParser}, which is faster than the full
+	 * format for messages with many parts or attachments.
+	 *
+	 * @param messageId the id of the message
+	 * @param options   the format and field mask
+	 */
+	public ReceivedMail read(String messageId, ReadOptions options) throws IOException {
+		return getContent(getMessage(messageId, options));
+	}
+
+	/**
+	 * @param messageId the id of the message
+	 * @param options   the format and field mask
+	 * @return the Gmail message, as returned by the API
+	 */
+	public Message getMessage(String messageId, ReadOptions options) throws IOException {
+		return get(messageId, options).execute();
+	}
+
+	private Gmail.Users.Messages.Get get(String messageId, ReadOptions options) throws IOException {
+		Gmail.Users.Messages.Get get = gmail().users().messages().get(userId, messageId)
+		        .setFormat(options.getFormat().value());
+		if (options.getFormat() == ReadOptions.Format.METADATA && options.getMetadataHeaders() != null) {
+			get.setMetadataHeaders(options.getMetadataHeaders());
+		}
+		if (options.getFields() != null) {
+			get.setFields(options.getFields());
+		}
+		return get;
+	}
+
+	public void delete(Message m) throws IOException {
+		gmail().users().messages().delete(userId, m.getId()).execute();
+	}
+
+	public void trash(Message m) throws IOException {
+		gmail().users().messages().trash(userId, m.getId()).execute();
+	}
+
+	/**
+	 * Read several messages, grouping the calls in batch HTTP requests.
+	 * 
+	 * @param messageIds the ids of the messages to read
+	 * @return the mails keyed by message id and the messages that could not be
+	 *         read
+	 */
+	public BatchResult<ReceivedMail> readAll(List<String> messageIds) throws IOException {
+		return readAll(messageIds, ReadOptions.full());
+	}
+
+	/**
+	 * Read several messages, grouping the calls in batch HTTP requests and
+	 * fetching only what the options ask for.
+	 * 
+	 * @param messageIds the ids of the messages to read
+	 * @param options    the format and field mask
+	 * @return the mails keyed by message id and the messages that could not be
+	 *         read or parsed
+	 */
+	public BatchResult<ReceivedMail> readAll(List<String> messageIds, ReadOptions options) throws IOException {
+		BatchResult<Message> messages = executeBatch(messageIds, id -> get(id, options));
+		BatchResult<ReceivedMail> result = new BatchResult<>();
+		for (Map.Entry<String, Message> message : messages.getResults().entrySet()) {
+			try {
+				result.addResult(message.getKey(), getContent(message.getValue()));
+			} catch (IOException | UncheckedIOException e) {
+				result.addFailure(message.getKey(), e);
+			}
+		}
+		for (Map.Entry<String, Exception> failure : messages.getFailures().entrySet()) {
+			result.addFailure(failure.getKey(), failure.getValue());
+		}
+		return result;
+	}
+
+	public BatchResult<Message> trashAll(List<String> messageIds) throws IOException {
+		Gmail service = gmail();
+		return executeBatch(messageIds, id -> service.users().messages().trash(userId, id));
+	}
+
+	/**
+	 * Permanently delete messages with the Gmail batchDelete call, which takes up
+	 * to {@value #MAX_IDS_PER_BULK_CALL} ids per request. A failing request, or
+	 * one that can't reach Gmail, marks all of its ids as failed.
+	 * 
+	 * @param messageIds the ids of the messages to delete
+	 * @return the deleted and the failed message ids
+	 */
+	public BatchResult<Void> deleteAll(List<String> messageIds) throws IOException {
+		Gmail service = gmail();
+		BatchResult<Void> result = new BatchResult<>();
+		for (List<String> chunk : chunk(messageIds, MAX_IDS_PER_BULK_CALL)) {
+			try {
+				service.users().messages().batchDelete(userId, new BatchDeleteMessagesRequest().setIds(chunk))
+				        .execute();
+				chunk.forEach(id -> result.addResult(id, null));
+			} catch (IOException e) {
+				chunk.forEach(id -> result.addFailure(id, e));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Add and remove labels on messages with the Gmail batchModify call, which
+	 * takes up to {@value #MAX_IDS_PER_BULK_CALL} ids per request. A failing
+	 * request, or one that can't reach Gmail, marks all of its ids as failed.
+	 * 
+	 * @param messageIds     the ids of the messages to modify
+	 * @param addLabelIds    the labels to add, may be null
+	 * @param removeLabelIds the labels to remove, may be null
+	 * @return the modified and the failed message ids
+	 */
+	public BatchResult<Void> batchModify(List<String> messageIds, List<String> addLabelIds,
+	        List<String> removeLabelIds) throws IOException {
+		Gmail service = gmail();
+		BatchResult<Void> result = new BatchResult<>();
+		for (List<String> chunk : chunk(messageIds, MAX_IDS_PER_BULK_CALL)) {
+			try {
+				service.users().messages().batchModify(userId, new BatchModifyMessagesRequest().setIds(chunk)
+				        .setAddLabelIds(addLabelIds).setRemoveLabelIds(removeLabelIds)).execute();
+				chunk.forEach(id -> result.addResult(id, null));
+			} catch (IOException e) {
+				chunk.forEach(id -> result.addFailure(id, e));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Execute the requests in batches of batchSize. A batch that fails as a whole
+	 * marks its ids without a response as failed, the next batches still being
+	 * executed.
+	 */
+	private <T> BatchResult<T> executeBatch(List<String> ids, BatchItemRequest<T> request)
+	        throws IOException {
+		Gmail service = gmail();
+		BatchResult<T> result = new BatchResult<>();
+		for (List<String> chunk : chunk(ids, config.getBatchSize())) {
+			try {
+				BatchRequest batch = service.batch();
+				for (String id : chunk) {
+					request.create(id).queue(batch, new JsonBatchCallback<T>() {
+						@Override
+						public void onSuccess(T t, HttpHeaders responseHeaders) {
+							result.addResult(id, t);
+						}
+
+						@Override
+						public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+							result.addFailure(id, new IOException(e.getCode() + " " + e.getMessage()));
+						}
+					});
+				}
+				batch.execute();
+			} catch (IOException e) {
+				for (String id : chunk) {
+					if (!result.contains(id)) {
+						result.addFailure(id, e);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<List<String>> chunk(List<String> ids, int size) {
+		List<List<String>> chunks = new ArrayList<>();
+		for (int i = 0; i < ids.size(); i += size) {
+			chunks.add(ids.subList(i, Math.min(ids.size(), i + size)));
+		}
+		return chunks;
+	}
+
+	private interface BatchItemRequest<T> {
+		AbstractGoogleJsonClientRequest<T> create(String id) throws IOException;
+	}
+
+	public ReceivedMail getContent(Message message) throws IOException {
+		if (message.getRaw() != null) {
+			ReceivedMail mail = RawMailParser.parse(message, config.getAttachmentSpillThreshold());
+			if (mail.getAttachments() != null && !config.isLazyAttachments()) {
+				loadAttachments(mail.getAttachments());
+			}
+			return mail;
+		}
+		ReceivedMail mail = new ReceivedMail();
+		mail.setId(message.getId());
+		mail.setThreadId(message.getThreadId());
+		mail.setLabelIds(message.getLabelIds());
+		if (message.getPayload() == null) {
+			// minimal format
+			return mail;
+		}
+
+		List<MessagePartHeader> headers = message.getPayload().getHeaders();
+		for (MessagePartHeader h : headers == null ? List.<MessagePartHeader>of() : headers) {
+			mail.addHeader(h.getName(), h.getValue());
+			if (h.getName().equals("Subject")) {
+				mail.setSubject(h.getValue());
+			} else if (h.getName().equals("From")) {
+				mail.setFrom(h.getValue());
+			} else if (h.getName().equals("To")) {
+				mail.setTo(new String[] { h.getValue() });
+			}
+		}
+		return getBodyParts(message, mail);
+	}
+
+	private ReceivedMail getBodyParts(Message message, ReceivedMail mail) throws IOException {
+		if (message.getPayload().getParts() == null) {
+			getMailContent(message.getPayload(), mail);
+		} else {
+			List<MessagePart> messageParts = message.getPayload().getParts();
+			List<MessagePart> attachmentParts = new ArrayList<>();
+			for (MessagePart messagePart : messageParts) {
+				if (messagePart.getFilename() == null || messagePart.getFilename().equals("")) {
+					getMailContent(messagePart, mail);
+				} else {
+					attachmentParts.add(messagePart);
+				}
+			}
+			if (!attachmentParts.isEmpty()) {
+				mail.setAttachments(getAttachments(message.getId(), attachmentParts));
+			}
+		}
+		return mail;
+	}
+
+	private ReceivedMail getMailContent(MessagePart messagePart, ReceivedMail mail) {
+		if (messagePart.getMimeType() == null) {
+			// metadata format or partial response without the body
+			return mail;
+		}
+		if (messagePart.getMimeType().equals("text/plain")) {
+			if (mail.getBody() == null) {
+				mail.setBody(decode(messagePart.getBody()));
+			}
+			return mail;
+		}
+		if (messagePart.getMimeType().equals("text/html") || messagePart.getMimeType().equals("text/x-amp-html")) {
+			mail.setBody(decode(messagePart.getBody()));
+			return mail;
+		}
+		List<MessagePart> bodyParts = messagePart.getParts();
+		if (bodyParts == null) {
+			// metadata format
+			return mail;
+		}
+		for (MessagePart part : bodyParts) {
+			if ("text/html".equals(part.getMimeType())) {
+				mail.setBody(decode(part.getBody()));
+				break;
+			}
+			if ("text/plain".equals(part.getMimeType())) {
+				mail.setBody(decode(part.getBody()));
+			}
+		}
+		return mail;
+	}
+
+	/**
+	 * @return the text of a body part, or null if it was not fetched
+	 */
+	private static String decode(MessagePartBody body) {
+		if (body == null || body.getData() == null) {
+			return null;
+		}
+		return new String(body.decodeData(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Build the attachments of a message from the metadata of its parts. Their
+	 * content is fetched on first access when lazyAttachments is configured,
+	 * otherwise it is downloaded right away.
+	 */
+	private List<Attachment> getAttachments(String messageId, List<MessagePart> attachmentParts)
+	        throws IOException {
+		List<Attachment> attachments = new ArrayList<>();
+		for (MessagePart attachmentPart : attachmentParts) {
+			attachments.add(getAttachment(messageId, attachmentPart));
+		}
+		if (!config.isLazyAttachments()) {
+			loadAttachments(attachments);
+		}
+		return attachments;
+	}
+
+	/**
+	 * Download the content of the attachments of a mail that were not fetched
+	 * yet.
+	 * 
+	 * @param mail the mail whose attachments should be loaded
+	 */
+	public void loadAttachments(ReceivedMail mail) throws IOException {
+		if (mail.getAttachments() != null) {
+			loadAttachments(mail.getAttachments());
+		}
+	}
+
+	/**
+	 * Download the attachments concurrently. They are spread over at most
+	 * attachmentDownloadsPerMessage sequential lanes, all running on a pool
+	 * shared by every message.
+	 */
+	private void loadAttachments(List<Attachment> attachments) throws IOException {
+		if (attachments.size() == 1) {
+			attachments.get(0).load();
+			return;
+		}
+		int lanes = Math.max(1, Math.min(attachments.size(),
+		        config.getAttachmentDownloadsPerMessage()));
+		CompletableFuture<?>[] laneResults = new CompletableFuture<?>[lanes];
+		for (int lane = 0; lane < lanes; lane++) {
+			CompletableFuture<Void> laneResult = CompletableFuture.completedFuture(null);
+			for (int i = lane; i < attachments.size(); i += lanes) {
+				Attachment attachment = attachments.get(i);
+				laneResult = laneResult.thenRunAsync(() -> {
+					try {
+						attachment.load();
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}, attachmentExecutor);
+			}
+			laneResults[lane] = laneResult;
+		}
+		try {
+			CompletableFuture.allOf(laneResults).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			}
+			throw e;
+		}
+	}
+
+	private Attachment getAttachment(String messageId, MessagePart messagePart) {
+		Attachment attachment = new Attachment();
+		attachment.setContentType(messagePart.getMimeType());
+		attachment.setName(messagePart.getFilename());
+
+		MessagePartBody body = messagePart.getBody();
+		if (body.getSize() != null) {
+			attachment.setSize(body.getSize());
+		}
+		attachment.setLoader(() -> {
+			String data = body.getData();
+			if (body.getAttachmentId() != null) {
+				data = gmail().users().messages().attachments().get(userId, messageId, body.getAttachmentId())
+				        .execute().getData();
+			}
+			return Base64.getUrlDecoder().wrap(new AsciiInputStream(data == null ? "" : data));
+		}, config.getAttachmentSpillThreshold());
+		return attachment;
+	}
+}
@@ -1,77 +1,98 @@
 package io.camunda.google;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.GeneralSecurityException;
-import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
-import org.apache.commons.codec.binary.Base64;
-
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.model.Label;
-import com.google.api.services.gmail.model.ListLabelsResponse;
-import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
-import com.google.api.services.gmail.model.MessagePart;
-import com.google.api.services.gmail.model.MessagePartBody;
-import com.google.api.services.gmail.model.MessagePartHeader;
 
-import io.camunda.google.model.Attachment;
+import io.camunda.google.model.BatchResult;
 import io.camunda.google.model.Mail;
+import io.camunda.google.model.ReadOptions;
 import io.camunda.google.model.ReceivedMail;
 
+/**
+ * Gmail operations on the mailbox of the default user. See
+ * {@link GmailClient} to work with other mailboxes.
+ */
 public class GmailUtils {
 
-	private static Gmail service;
-
 	public static Gmail gmail() {
-		// Build a new authorized API client service.
-		try {
-			final NetHttpTransport HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-			service = new Gmail.Builder(HTTP_TRANSPORT, GoogleAuthUtils.JSON_FACTORY,
-			        GoogleAuthUtils.getCredentials(HTTP_TRANSPORT))
-			        .setApplicationName(GoogleAuthUtils.getGoogleWsConfig().getApplicationName()).build();
-			return service;
-		} catch (GeneralSecurityException | IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-
-	private static Gmail getService() {
-		if (service == null) {
-			service = gmail();
-		}
-		return service;
+		return GmailClient.getDefault().gmail();
 	}
 
 	public static Message convertToGmailMessage(MimeMessage mimeMessage) throws IOException, MessagingException {
-		// Encode and wrap the MIME message into a gmail message
-		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-		mimeMessage.writeTo(buffer);
-		byte[] rawMessageBytes = buffer.toByteArray();
-		String encodedEmail = Base64.encodeBase64URLSafeString(rawMessageBytes);
+		return convertToGmailMessage(mimeMessage, 8192);
+	}
+
+	/**
+	 * Encode and wrap the MIME message into a gmail message. The message is
+	 * base64url encoded while it is written, into a buffer presized for the
+	 * expected size, so only the encoded form is held in memory.
+	 * 
+	 * @param mimeMessage  the message
+	 * @param expectedSize the expected size in bytes of the MIME message
+	 */
+	public static Message convertToGmailMessage(MimeMessage mimeMessage, long expectedSize)
+	        throws IOException, MessagingException {
+		int encodedSize = (int) Math.min(Integer.MAX_VALUE - 8, (expectedSize + 2) / 3 * 4);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(encodedSize, 256));
+		try (OutputStream out = new BufferedOutputStream(Base64.getUrlEncoder().withoutPadding().wrap(buffer))) {
+			mimeMessage.writeTo(out);
+		}
 		Message message = new Message();
-		message.setRaw(encodedEmail);
+		message.setRaw(buffer.toString(StandardCharsets.US_ASCII));
 		return message;
 	}
 
 	public static void sendEmail(Mail mail) throws MessagingException, IOException {
-
-		Gmail service = getService();
-
-		MimeMessage mimeMessage = MailBuilderUtils.buildMimeMessage(mail);
-
-		Message gmailMessage = GmailUtils.convertToGmailMessage(mimeMessage);
-
-		gmailMessage = service.users().messages().send("me", gmailMessage).execute();
-
+		GmailClient.getDefault().sendEmail(mail);
+	}
+
+	/**
+	 * Send a mail without blocking the caller.
+	 * 
+	 * @param mail the mail to send
+	 * @return a future completed with the Gmail message id
+	 */
+	public static CompletableFuture<String> sendEmailAsync(Mail mail) {
+		return GmailClient.getDefault().sendEmailAsync(mail);
+	}
+
+	/**
+	 * Send mails in bulk. MIME messages are built while previous ones are being
+	 * sent, the sends run on a bounded pool and respect the configured rate.
+	 * 
+	 * @param mails the mails to send
+	 * @return one future per mail, completed with its Gmail message id or its
+	 *         failure
+	 */
+	public static List<CompletableFuture<String>> sendEmails(Collection<Mail> mails) {
+		return GmailClient.getDefault().sendEmails(mails);
+	}
+
+	/**
+	 * Send mails in bulk, the stream being consumed as the mails are sent, e.g.
+	 * the mails of a {@link MailMerge}.
+	 * 
+	 * @param mails the mails to send
+	 * @return one future per mail, completed with its Gmail message id or its
+	 *         failure
+	 */
+	public static List<CompletableFuture<String>> sendEmails(Stream<Mail> mails) {
+		return GmailClient.getDefault().sendEmails(mails);
 	}
 
 	public static List<Message> readMessages() throws MessagingException, IOException {
@@ -86,111 +107,112 @@ public class GmailUtils {
 		return readMessages(null, unread);
 	}
 
+	/**
+	 * @see GmailClient#readMessages(String, Boolean)
+	 */
 	public static List<Message> readMessages(String folderName, Boolean unread) throws MessagingException, IOException {
-		Gmail service = getService();
-		String q = "";
-		if (folderName != null) {
-			q = "label:" + folderName;
-		}
-		if (unread != null) {
-			q += " is:" + (unread ? "unread" : "read");
-		}
-		ListMessagesResponse response = service.users().messages().list("me").setQ(q).execute();
+		return GmailClient.getDefault().readMessages(folderName, unread);
+	}
+
+	public static Stream<Message> streamMessages(String folderName, Boolean unread) {
+		return GmailClient.getDefault().streamMessages(folderName, unread);
+	}
 
-		return response.getMessages();
+	/**
+	 * @see GmailClient#streamMessages(String, Boolean, long)
+	 */
+	public static Stream<Message> streamMessages(String folderName, Boolean unread, long pageSize) {
+		return GmailClient.getDefault().streamMessages(folderName, unread, pageSize);
+	}
+
+	/**
+	 * @see GmailClient#newMailboxSync(String)
+	 */
+	public static MailboxSync newMailboxSync(String labelId) throws IOException {
+		return GmailClient.getDefault().newMailboxSync(labelId);
+	}
+
+	/**
+	 * @see GmailClient#watch(String, String, NotificationSource,
+	 *      MailWatcher.Listener)
+	 */
+	public static MailWatcher watch(String topicName, String labelId, NotificationSource source,
+	        MailWatcher.Listener listener) throws IOException {
+		return GmailClient.getDefault().watch(topicName, labelId, source, listener);
 	}
 
 	public static List<Label> getLabels() throws IOException {
-		Gmail service = getService();
-		ListLabelsResponse listResponse = service.users().labels().list("me").execute();
-		return listResponse.getLabels();
+		return GmailClient.getDefault().getLabels();
 	}
 
 	public static ReceivedMail read(String messageId) throws IOException {
-		Gmail service = getService();
-		Message m = service.users().messages().get("me", messageId).execute();
-		ReceivedMail mail = getContent(m);
-		return mail;
+		return GmailClient.getDefault().read(messageId);
+	}
+
+	/**
+	 * @see GmailClient#read(String, ReadOptions)
+	 */
+	public static ReceivedMail read(String messageId, ReadOptions options) throws IOException {
+		return GmailClient.getDefault().read(messageId, options);
+	}
+
+	/**
+	 * @see GmailClient#getMessage(String, ReadOptions)
+	 */
+	public static Message getMessage(String messageId, ReadOptions options) throws IOException {
+		return GmailClient.getDefault().getMessage(messageId, options);
 	}
 
 	public static void delete(Message m) throws IOException {
-		getService().users().messages().delete("me", m.getId()).execute();
+		GmailClient.getDefault().delete(m);
 	}
 
 	public static void trash(Message m) throws IOException {
-		getService().users().messages().trash("me", m.getId()).execute();
+		GmailClient.getDefault().trash(m);
 	}
 
-	public static ReceivedMail getContent(Message message) throws IOException {
-		ReceivedMail mail = new ReceivedMail();
-
-		List<MessagePartHeader> headers = message.getPayload().getHeaders();
-		for (MessagePartHeader h : headers) {
-			if (h.getName().equals("Subject")) {
-				mail.setSubject(h.getValue());
-			} else if (h.getName().equals("From")) {
-				mail.setFrom(h.getValue());
-			} else if (h.getName().equals("To")) {
-				mail.setTo(new String[] { h.getValue() });
-			}
-		}
-		return getBodyParts(message, mail);
-	}
-
-	private static ReceivedMail getBodyParts(Message message, ReceivedMail mail) throws IOException {
-		if (message.getPayload().getParts() == null) {
-			getMailContent(message.getPayload(), mail);
-		} else {
-			List<MessagePart> messageParts = message.getPayload().getParts();
-			for (MessagePart messagePart : messageParts) {
-				if (messagePart.getFilename().equals("")) {
-					getMailContent(messagePart, mail);
-				} else {
-					getAttachment(message.getId(), messagePart, mail);
-				}
-			}
-		}
-		return mail;
+	/**
+	 * @see GmailClient#readAll(List)
+	 */
+	public static BatchResult<ReceivedMail> readAll(List<String> messageIds) throws IOException {
+		return GmailClient.getDefault().readAll(messageIds);
 	}
 
-	private static ReceivedMail getMailContent(MessagePart messagePart, ReceivedMail mail) {
-		if (messagePart.getMimeType().equals("text/plain")) {
-			if (mail.getBody() == null) {
-				mail.setBody(new String(messagePart.getBody().decodeData(), StandardCharsets.UTF_8));
-			}
-			return mail;
-		}
-		if (messagePart.getMimeType().equals("text/html") || messagePart.getMimeType().equals("text/x-amp-html")) {
-			mail.setBody(new String(messagePart.getBody().decodeData(), StandardCharsets.UTF_8));
-			return mail;
-		}
-		List<MessagePart> bodyParts = messagePart.getParts();
-		for (MessagePart part : bodyParts) {
-			if (part.getMimeType().equals("text/html")) {
-				mail.setBody(new String(part.getBody().decodeData(), StandardCharsets.UTF_8));
-				break;
-			}
-			if (part.getMimeType().equals("text/plain")) {
-				mail.setBody(new String(part.getBody().decodeData(), StandardCharsets.UTF_8));
-			}
-		}
-		return mail;
+	/**
+	 * @see GmailClient#readAll(List, ReadOptions)
+	 */
+	public static BatchResult<ReceivedMail> readAll(List<String> messageIds, ReadOptions options)
+	        throws IOException {
+		return GmailClient.getDefault().readAll(messageIds, options);
 	}
 
-	private static ReceivedMail getAttachment(String messageId, MessagePart messagePart, ReceivedMail mail)
-	        throws IOException {
-		Attachment attachment = new Attachment();
-		attachment.setContentType(messagePart.getMimeType());
-		attachment.setName(messagePart.getFilename());
-
-		MessagePartBody attachmentBody = getService().users().messages().attachments()
-		        .get("me", messageId, messagePart.getBody().getAttachmentId()).execute();
-		attachment.setData(attachmentBody.decodeData());
-		attachment.setSize(attachmentBody.getSize());
-		if (mail.getAttachments() == null) {
-			mail.setAttachments(new ArrayList<>());
-		}
-		mail.getAttachments().add(attachment);
-		return mail;
+	public static BatchResult<Message> trashAll(List<String> messageIds) throws IOException {
+		return GmailClient.getDefault().trashAll(messageIds);
+	}
+
+	/**
+	 * @see GmailClient#deleteAll(List)
+	 */
+	public static BatchResult<Void> deleteAll(List<String> messageIds) throws IOException {
+		return GmailClient.getDefault().deleteAll(messageIds);
+	}
+
+	/**
+	 * @see GmailClient#batchModify(List, List, List)
+	 */
+	public static BatchResult<Void> batchModify(List<String> messageIds, List<String> addLabelIds,
+	        List<String> removeLabelIds) throws IOException {
+		return GmailClient.getDefault().batchModify(messageIds, addLabelIds, removeLabelIds);
+	}
+
+	public static ReceivedMail getContent(Message message) throws IOException {
+		return GmailClient.getDefault().getContent(message);
+	}
+
+	/**
+	 * @see GmailClient#loadAttachments(ReceivedMail)
+	 */
+	public static void loadAttachments(ReceivedMail mail) throws IOException {
+		GmailClient.getDefault().loadAttachments(mail);
 	}
 }
@@ -4,62 +4,238 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.extensions.java6.auth.oauth2.AuthorizationCodeInstalledApp;
 import com.google.api.client.extensions.jetty.auth.oauth2.LocalServerReceiver;
 import com.google.api.client.googleapis.auth.oauth2.GoogleAuthorizationCodeFlow;
 import com.google.api.client.googleapis.auth.oauth2.GoogleClientSecrets;
+import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.client.util.store.FileDataStoreFactory;
 
 import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.util.ExpiringCache;
+import io.camunda.google.util.LazyHolder;
 
 public class GoogleAuthUtils {
 
-	private static GoogleWsConfig googleWsConfig;
+	public static final String DEFAULT_USER_ID = "user";
+
+	private static final LazyHolder<GoogleWsConfig> googleWsConfig = new LazyHolder<>(GoogleWsConfig::new);
+
+	/**
+	 * credentials by configuration and user. It holds at least the credentials of
+	 * the cached clients, which are evicted with their client.
+	 */
+	private static final LazyHolder<ExpiringCache<List<Object>, LazyHolder<Credential>>> credentials = new LazyHolder<>(
+	        () -> new ExpiringCache<>(credentialCacheSize(), 0, (key, credential) -> {
+		        if (credential.isInitialized()) {
+			        getCredentialRefresher().unregister(credential.get());
+		        }
+	        }));
+
+	/** authorization flows by transport and configuration */
+	private static final ConcurrentMap<List<Object>, GoogleAuthorizationCodeFlow> authorizationFlows = new ConcurrentHashMap<>();
+
+	/** service account credentials by transport and configuration */
+	@SuppressWarnings("deprecation")
+	private static final ConcurrentMap<List<Object>, GoogleCredential> serviceAccounts = new ConcurrentHashMap<>();
+
+	private static final LazyHolder<CredentialRefresher> credentialRefresher = new LazyHolder<>(
+	        () -> new CredentialRefresher(getGoogleWsConfig().getTokenRefreshAheadSeconds()));
 
 	public static void configure(GoogleWsConfig googleWsConfig) {
-		GoogleAuthUtils.googleWsConfig = googleWsConfig;
+		GoogleAuthUtils.googleWsConfig.set(googleWsConfig);
+		credentials.reset();
+		authorizationFlows.clear();
+		serviceAccounts.clear();
+		if (credentialRefresher.isInitialized()) {
+			credentialRefresher.get().shutdown();
+			credentialRefresher.reset();
+		}
+		GoogleClients.reset();
+		MailSender.setDefault(null);
 	}
 
 	public static GoogleWsConfig getGoogleWsConfig() {
-		if (googleWsConfig == null) {
-			googleWsConfig = new GoogleWsConfig();
-		}
-		return googleWsConfig;
+		return googleWsConfig.get();
+	}
+
+	public static CredentialRefresher getCredentialRefresher() {
+		return credentialRefresher.get();
 	}
 
 	public static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
 
 	/**
-	 * Creates an authorized Credential object.
+	 * Get the authorized Credential object of the default user.
 	 * 
 	 * @param HTTP_TRANSPORT The network HTTP Transport.
 	 * @return An authorized Credential object.
 	 * @throws IOException If the credentials.json file cannot be found.
 	 */
 	public static Credential getCredentials(NetHttpTransport HTTP_TRANSPORT) throws IOException {
+		return getCredentials(HTTP_TRANSPORT, DEFAULT_USER_ID);
+	}
+
+	/**
+	 * Get the authorized Credential object of a user. It is created once, then
+	 * cached (up to credentialCacheSize users, the least recently used being
+	 * evicted) and its access token kept fresh in the background.
+	 * <p>
+	 * With a service account key configured, the credential impersonates the
+	 * user through domain-wide delegation, without any interaction. The default
+	 * user is then the configured delegatedUser, or the service account itself.
+	 * 
+	 * @param httpTransport The network HTTP Transport.
+	 * @param userId        The id of the user in the token store, or the email of
+	 *                      the user to impersonate with a service account.
+	 * @return An authorized Credential object.
+	 * @throws IOException If the credentials.json file cannot be found.
+	 */
+	public static Credential getCredentials(HttpTransport httpTransport, String userId) throws IOException {
+		return getCredentials(httpTransport, getGoogleWsConfig(), userId);
+	}
+
+	/**
+	 * Get the authorized Credential object of a user, authenticated with the
+	 * given configuration.
+	 * 
+	 * @param httpTransport  The network HTTP Transport.
+	 * @param googleWsConfig The configuration of the credentials.
+	 * @param userId         The id of the user in the token store, or the email
+	 *                       of the user to impersonate with a service account.
+	 * @return An authorized Credential object.
+	 * @throws IOException If the credentials.json file cannot be found.
+	 */
+	public static Credential getCredentials(HttpTransport httpTransport, GoogleWsConfig googleWsConfig, String userId)
+	        throws IOException {
+		LazyHolder<Credential> credential = credentials.get().computeIfAbsent(List.of(googleWsConfig, userId),
+		        key -> new LazyHolder<>(() -> {
+			        try {
+				        Credential authorized = googleWsConfig.isServiceAccount()
+				                ? delegate(httpTransport, googleWsConfig, userId)
+				                : authorize(httpTransport, googleWsConfig, userId);
+				        getCredentialRefresher().register(authorized);
+				        return authorized;
+			        } catch (IOException e) {
+				        throw new UncheckedIOException(e);
+			        }
+		        }));
+		try {
+			return credential.get();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static int credentialCacheSize() {
+		GoogleWsConfig config = getGoogleWsConfig();
+		// the default user and each cached client
+		return Math.max(config.getCredentialCacheSize(), config.getClientCacheSize() + 1);
+	}
+
+	/**
+	 * Mark the credential of a user as used, so that it is evicted after the
+	 * credentials of inactive users.
+	 */
+	static void touchCredentials(GoogleWsConfig googleWsConfig, String userId) {
+		credentials.get().get(List.of(googleWsConfig, userId));
+	}
+
+	/**
+	 * Forget the credential of a user and stop refreshing it, e.g. once its
+	 * client is evicted.
+	 */
+	static void evictCredentials(GoogleWsConfig googleWsConfig, String userId) {
+		if (!credentials.isInitialized()) {
+			return;
+		}
+		List<Object> key = List.of(googleWsConfig, userId);
+		LazyHolder<Credential> credential = credentials.get().get(key);
+		credentials.get().invalidate(key);
+		if (credential != null && credential.isInitialized()) {
+			getCredentialRefresher().unregister(credential.get());
+		}
+	}
+
+	/**
+	 * Creates an authorized Credential object.
+	 */
+	private static Credential authorize(HttpTransport httpTransport, GoogleWsConfig config, String userId)
+	        throws IOException {
+		GoogleAuthorizationCodeFlow flow = getAuthorizationFlow(httpTransport, config);
+		LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(config.getCallBackPort()).build();
+		Credential credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize(userId);
+		// returns an authorized Credential object.
+		return credential;
+	}
+
+	/**
+	 * Creates a Credential object of the service account impersonating the user.
+	 */
+	@SuppressWarnings("deprecation")
+	private static Credential delegate(HttpTransport httpTransport, GoogleWsConfig config, String userId)
+	        throws IOException {
+		List<Object> key = List.of(httpTransport, config);
+		GoogleCredential serviceAccount = serviceAccounts.get(key);
+		if (serviceAccount == null) {
+			try (InputStream in = openResource(config.getServiceAccountKeyPath())) {
+				serviceAccount = GoogleCredential.fromStream(in, httpTransport, JSON_FACTORY)
+				        .createScoped(config.getScopes());
+			}
+			GoogleCredential existing = serviceAccounts.putIfAbsent(key, serviceAccount);
+			if (existing != null) {
+				serviceAccount = existing;
+			}
+		}
+		String subject = DEFAULT_USER_ID.equals(userId) ? config.getDelegatedUser() : userId;
+		return subject == null ? serviceAccount : serviceAccount.createDelegated(subject);
+	}
+
+	private static GoogleAuthorizationCodeFlow getAuthorizationFlow(HttpTransport httpTransport, GoogleWsConfig config)
+	        throws IOException {
+		List<Object> key = List.of(httpTransport, config);
+		GoogleAuthorizationCodeFlow flow = authorizationFlows.get(key);
+		if (flow != null) {
+			return flow;
+		}
 		// Load client secrets.
-		InputStream in = DriveUtils.class.getResourceAsStream(getGoogleWsConfig().getCredentialsFilePath());
-		if (in == null) {
-			throw new FileNotFoundException("Resource not found: " + getGoogleWsConfig().getCredentialsFilePath());
+		GoogleClientSecrets clientSecrets;
+		try (InputStream in = openResource(config.getCredentialsFilePath())) {
+			clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
 		}
-		GoogleClientSecrets clientSecrets = GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(in));
 
 		// Build flow and trigger user authorization request.
-		GoogleAuthorizationCodeFlow flow = new GoogleAuthorizationCodeFlow.Builder(HTTP_TRANSPORT, JSON_FACTORY,
-		        clientSecrets, getGoogleWsConfig().getScopes())
-		        .setDataStoreFactory(
-		                new FileDataStoreFactory(new java.io.File(getGoogleWsConfig().getTokensDirectoryPath())))
+		flow = new GoogleAuthorizationCodeFlow.Builder(httpTransport, JSON_FACTORY, clientSecrets, config.getScopes())
+		        .setDataStoreFactory(new FileDataStoreFactory(new java.io.File(config.getTokensDirectoryPath())))
 		        .setAccessType("offline").build();
-		LocalServerReceiver receiver = new LocalServerReceiver.Builder().setPort(getGoogleWsConfig().getCallBackPort())
-		        .build();
-		Credential credential = new AuthorizationCodeInstalledApp(flow, receiver).authorize("user");
-		// returns an authorized Credential object.
-		return credential;
+		GoogleAuthorizationCodeFlow existing = authorizationFlows.putIfAbsent(key, flow);
+		return existing != null ? existing : flow;
+	}
+
+	/**
+	 * Open a classpath resource, or a file if there is no such resource.
+	 */
+	private static InputStream openResource(String path) throws IOException {
+		InputStream in = DriveUtils.class.getResourceAsStream(path);
+		if (in != null) {
+			return in;
+		}
+		if (Files.isRegularFile(Paths.get(path))) {
+			return Files.newInputStream(Paths.get(path));
+		}
+		throw new FileNotFoundException("Resource not found: " + path);
 	}
 
 }
@@ -0,0 +1,207 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.services.drive.Drive;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.sheets.v4.Sheets;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.util.ExpiringCache;
+import io.camunda.google.util.LazyHolder;
+import io.camunda.google.util.RetryInitializer;
+
+/**
+ * Registry of the Google API clients of a user, shared by {@link DriveClient}
+ * and {@link GmailClient}. The HTTP transport is created once per JVM, the
+ * credential once per configuration and user and the Drive, Sheets and Gmail
+ * clients are built on first use and then reused by every call.
+ */
+public class GoogleClients {
+
+	private static final LazyHolder<NetHttpTransport> httpTransport = new LazyHolder<>(() -> {
+		try {
+			return GoogleNetHttpTransport.newTrustedTransport();
+		} catch (GeneralSecurityException | IOException e) {
+			throw new RuntimeException(e);
+		}
+	});
+
+	private static final LazyHolder<GoogleClients> defaultClients = new LazyHolder<>(
+	        () -> create(GoogleAuthUtils.getGoogleWsConfig()));
+
+	/** clients by user, their credential being evicted with them */
+	private static final LazyHolder<ExpiringCache<String, LazyHolder<GoogleClients>>> userClients = new LazyHolder<>(
+	        () -> new ExpiringCache<>(GoogleAuthUtils.getGoogleWsConfig().getClientCacheSize(), 0, (userId, clients) -> {
+		        if (clients.isInitialized() && !GoogleAuthUtils.DEFAULT_USER_ID.equals(userId)) {
+			        GoogleAuthUtils.evictCredentials(clients.get().getConfig(), userId);
+		        }
+	        }));
+
+	private final HttpTransport transport;
+
+	private final HttpRequestInitializer requestInitializer;
+
+	private final String applicationName;
+
+	private final GoogleWsConfig config;
+
+	private final LazyHolder<Drive> drive = new LazyHolder<>(
+	        () -> new Drive.Builder(getTransport(), GoogleAuthUtils.JSON_FACTORY, getRequestInitializer())
+	                .setApplicationName(getApplicationName()).build());
+
+	private final LazyHolder<Sheets> sheets = new LazyHolder<>(
+	        () -> new Sheets.Builder(getTransport(), GoogleAuthUtils.JSON_FACTORY, getRequestInitializer())
+	                .setApplicationName(getApplicationName()).build());
+
+	private final LazyHolder<Gmail> gmail = new LazyHolder<>(
+	        () -> new Gmail.Builder(getTransport(), GoogleAuthUtils.JSON_FACTORY, getRequestInitializer())
+	                .setApplicationName(getApplicationName()).build());
+
+	private final LazyHolder<GmailClient> gmailClient;
+
+	private final LazyHolder<DriveClient> driveClient = new LazyHolder<>(() -> new DriveClient(this, getConfig()));
+
+	public GoogleClients(HttpTransport transport, HttpRequestInitializer requestInitializer, String applicationName) {
+		this(transport, requestInitializer, applicationName, GoogleAuthUtils.getGoogleWsConfig(), "me");
+	}
+
+	/**
+	 * @param transport          the HTTP transport, shared with other clients
+	 * @param requestInitializer the credential of the user
+	 * @param applicationName    the application name sent to Google
+	 * @param config             the configuration of the user
+	 * @param gmailUserId        the Gmail user id of the mailbox, "me" for the
+	 *                           authorized user
+	 */
+	public GoogleClients(HttpTransport transport, HttpRequestInitializer requestInitializer, String applicationName,
+	        GoogleWsConfig config, String gmailUserId) {
+		this.transport = transport;
+		this.requestInitializer = requestInitializer;
+		this.applicationName = applicationName;
+		this.config = config;
+		this.gmailClient = new LazyHolder<>(() -> new GmailClient(this, config, gmailUserId));
+	}
+
+	/**
+	 * @return the trusted HTTP transport shared by all the clients of this JVM.
+	 */
+	public static NetHttpTransport getHttpTransport() {
+		return httpTransport.get();
+	}
+
+	/**
+	 * @return the clients built from the {@link GoogleAuthUtils} configuration.
+	 */
+	public static GoogleClients getDefault() {
+		return defaultClients.get();
+	}
+
+	/**
+	 * Replace the default clients, e.g. to use a custom transport.
+	 *
+	 * @param clients the clients to use, or null to build them again from the
+	 *                {@link GoogleAuthUtils} configuration on next use.
+	 */
+	public static void setDefault(GoogleClients clients) {
+		defaultClients.set(clients);
+	}
+
+	/**
+	 * Get the clients acting on behalf of a user, e.g. a mailbox impersonated
+	 * with a service account. They are cached for up to clientCacheSize users,
+	 * the least recently used being evicted with their credential. The
+	 * credential of a cached client is kept, and refreshed in the background.
+	 *
+	 * @param userId the id of the user
+	 * @return the clients of the user
+	 */
+	public static GoogleClients forUser(String userId) {
+		GoogleClients clients = userClients.get()
+		        .computeIfAbsent(userId, id -> new LazyHolder<>(() -> create(GoogleAuthUtils.getGoogleWsConfig(), id)))
+		        .get();
+		GoogleAuthUtils.touchCredentials(clients.getConfig(), userId);
+		return clients;
+	}
+
+	static void reset() {
+		defaultClients.reset();
+		userClients.reset();
+	}
+
+	public static GoogleClients create(GoogleWsConfig googleWsConfig) {
+		return create(googleWsConfig, GoogleAuthUtils.DEFAULT_USER_ID);
+	}
+
+	public static GoogleClients create(GoogleWsConfig googleWsConfig, String userId) {
+		NetHttpTransport transport = getHttpTransport();
+		try {
+			return new GoogleClients(transport,
+			        new RetryInitializer(GoogleAuthUtils.getCredentials(transport, googleWsConfig, userId),
+			                googleWsConfig.getRetryMaxElapsedTimeMillis(),
+			                Map.of("gmail", googleWsConfig.getGmailRatePerSecond(), "drive",
+			                        googleWsConfig.getDriveRatePerSecond(), "sheets",
+			                        googleWsConfig.getSheetsRatePerSecond())),
+			        googleWsConfig.getApplicationName(), googleWsConfig, "me");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public Drive drive() {
+		return drive.get();
+	}
+
+	public Sheets sheets() {
+		return sheets.get();
+	}
+
+	public Gmail gmail() {
+		return gmail.get();
+	}
+
+	/**
+	 * @return the Gmail operations on the mailbox of the user
+	 */
+	public GmailClient gmailClient() {
+		return gmailClient.get();
+	}
+
+	/**
+	 * @return the Drive operations on the files of the user
+	 */
+	public DriveClient driveClient() {
+		return driveClient.get();
+	}
+
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	public HttpRequestInitializer getRequestInitializer() {
+		return requestInitializer;
+	}
+
+	/**
+	 * @return the layer throttling and retrying the calls of these clients,
+	 *         exposing their throttled and retried counts, or null if they were
+	 *         built without one
+	 */
+	public RetryInitializer getRetryInitializer() {
+		return requestInitializer instanceof RetryInitializer ? (RetryInitializer) requestInitializer : null;
+	}
+
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	public GoogleWsConfig getConfig() {
+		return config;
+	}
+}
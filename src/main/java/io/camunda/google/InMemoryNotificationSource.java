@@ -0,0 +1,43 @@
+package io.camunda.google;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.camunda.google.model.MailNotification;
+
+/**
+ * Notification source fed by the application itself, e.g. from a webhook
+ * receiving Pub/Sub push messages, or in tests.
+ */
+public class InMemoryNotificationSource implements NotificationSource {
+
+	private final BlockingQueue<MailNotification> notifications = new LinkedBlockingQueue<>();
+
+	public void publish(MailNotification notification) {
+		notifications.add(notification);
+	}
+
+	public void publish(String emailAddress, BigInteger historyId) {
+		publish(new MailNotification(emailAddress, historyId));
+	}
+
+	@Override
+	public List<MailNotification> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		List<MailNotification> pending = new ArrayList<>();
+		MailNotification first = notifications.poll(timeout, unit);
+		if (first != null) {
+			pending.add(first);
+			notifications.drainTo(pending);
+		}
+		return pending;
+	}
+
+	@Override
+	public void close() {
+		notifications.clear();
+	}
+}
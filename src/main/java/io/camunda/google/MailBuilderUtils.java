@@ -1,78 +1,185 @@
 package io.camunda.google;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Properties;
+import java.util.logging.Logger;
 
 import javax.mail.MessagingException;
-import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
 
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheEntryValidityChecker;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.cache.StandardParsedTemplateEntryValidator;
+import org.thymeleaf.cache.TemplateCacheKey;
 import org.thymeleaf.context.Context;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.exceptions.TemplateInputException;
 
 import io.camunda.google.model.Mail;
+import io.camunda.google.util.LazyHolder;
 import io.camunda.thymeleaf.feel.TemplateEngineFactory;
 import io.camunda.thymeleaf.feel.config.ThymeleafConfig;
 
 public class MailBuilderUtils {
 
-	private static TemplateEngine templateEngine;
+	public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 200;
+
+	private static final Logger LOGGER = Logger.getLogger(MailBuilderUtils.class.getName());
+
+	private static volatile int templateCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
+
+	private static volatile long templateCacheTtlMillis = -1;
+
+	private static final LazyHolder<TemplateEngine> templateEngine = new LazyHolder<>(
+	        () -> withTemplateCache(TemplateEngineFactory.getTemplateEngine("MailBuilder")));
 
 	public static void configure() {
-		templateEngine = TemplateEngineFactory.getTemplateEngine("MailBuilder");
+		templateEngine.set(withTemplateCache(TemplateEngineFactory.getTemplateEngine("MailBuilder")));
 	}
 
 	public static void configure(ThymeleafConfig config) {
-		templateEngine = TemplateEngineFactory.getTemplateEngine("MailBuilder", config);
+		templateEngine.set(withTemplateCache(TemplateEngineFactory.getTemplateEngine("MailBuilder", config)));
 	}
 
-	public static TemplateEngine getTemplateEngine() {
-		if (templateEngine == null) {
-			configure();
-		}
-		return templateEngine;
+	/**
+	 * Bound the cache of the parsed templates, one entry per template and
+	 * language. Applies to the engines built afterwards, i.e. on the next
+	 * configure.
+	 */
+	public static void setTemplateCacheSize(int size) {
+		templateCacheSize = size;
 	}
 
-	public static MimeMessage buildMimeMessage(Mail mail) throws MessagingException, IOException {
+	public static int getTemplateCacheSize() {
+		return templateCacheSize;
+	}
 
-		// create MimeMessage
-		Properties props = new Properties();
-		Session session = Session.getDefaultInstance(props, null);
-		MimeMessage email = new MimeMessage(session);
-		MimeMessageUtils messageHelper = null;
-		if (mail.getAttachments() != null && mail.getAttachments().length > 0) {
-			messageHelper = new MimeMessageUtils(email, true);
-			for (File attachment : mail.getAttachments()) {
-				messageHelper.addAttachment(attachment.getName(), attachment);
-			}
+	/**
+	 * Reload the parsed templates once they have been cached for the given time,
+	 * so that changed templates are picked up without clearing the cache. Applies
+	 * to the engines built afterwards, i.e. on the next configure.
+	 *
+	 * @param ttlMillis time in milliseconds a parsed template is used, -1 to keep
+	 *                  it until evicted or cleared
+	 */
+	public static void setTemplateCacheTtlMillis(long ttlMillis) {
+		templateCacheTtlMillis = ttlMillis;
+	}
 
-		} else {
-			messageHelper = new MimeMessageUtils(email, false);
+	public static long getTemplateCacheTtlMillis() {
+		return templateCacheTtlMillis;
+	}
+
+	private static TemplateEngine withTemplateCache(TemplateEngine engine) {
+		if (engine.isInitialized()) {
+			LOGGER.warning("The template engine is already initialized, it keeps its own template cache");
+			return engine;
 		}
-		messageHelper.setFrom("me");
-		messageHelper.setTo(mail.getTo());
-		if (mail.getBcc() != null && mail.getBcc().length > 0) {
-			messageHelper.setBcc(mail.getBcc());
+		StandardCacheManager cacheManager = new StandardCacheManager();
+		cacheManager.setTemplateCacheMaxSize(templateCacheSize);
+		cacheManager.setTemplateCacheInitialSize(Math.min(templateCacheSize, 20));
+		long ttlMillis = templateCacheTtlMillis;
+		if (ttlMillis >= 0) {
+			cacheManager.setTemplateCacheValidityChecker(new ExpiringTemplateValidator(ttlMillis));
 		}
-		if (mail.getCc() != null && mail.getCc().length > 0) {
-			messageHelper.setCc(mail.getCc());
+		engine.setCacheManager(cacheManager);
+		return engine;
+	}
+
+	/**
+	 * Expires the parsed templates after a time, on top of the validity given by
+	 * the template resolver.
+	 */
+	private static class ExpiringTemplateValidator implements ICacheEntryValidityChecker<TemplateCacheKey, TemplateModel> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final StandardParsedTemplateEntryValidator resolverValidity = new StandardParsedTemplateEntryValidator();
+
+		private final long ttlMillis;
+
+		ExpiringTemplateValidator(long ttlMillis) {
+			this.ttlMillis = ttlMillis;
 		}
-		messageHelper.setSubject(mail.getSubject());
-		messageHelper.setText(mail.getBody(), true);
 
-		return messageHelper.getMimeMessage();
+		@Override
+		public boolean checkIsValueStillValid(TemplateCacheKey key, TemplateModel value, long entryCreationTimestamp) {
+			return System.currentTimeMillis() - entryCreationTimestamp < ttlMillis
+			        && resolverValidity.checkIsValueStillValid(key, value, entryCreationTimestamp);
+		}
+	}
+
+	public static TemplateEngine getTemplateEngine() {
+		return templateEngine.get();
+	}
+
+	public static MimeMessage buildMimeMessage(Mail mail) throws MessagingException, IOException {
+		return MimeMessageFactory.getDefault().createMimeMessage(mail);
 	}
 
 	public static String buildMailBody(String template, Map<String, Object> variables, Locale locale) {
-		Context context = new Context();
+		return getTemplateEngine().process(templateName(template, locale), new Context(locale, variables));
+	}
+
+	/**
+	 * Render the template to the writer, without building the body in memory.
+	 */
+	public static void buildMailBody(String template, Map<String, Object> variables, Locale locale, Writer writer) {
+		getTemplateEngine().process(templateName(template, locale), new Context(locale, variables), writer);
+	}
 
-		for (Map.Entry<String, Object> entry : variables.entrySet()) {
-			context.setVariable(entry.getKey(), entry.getValue());
+	/**
+	 * Parse the templates in the given languages at startup so that the first
+	 * mails don't pay for it. The templates are rendered without variables, only
+	 * a missing template is reported.
+	 */
+	public static void preloadTemplates(Collection<String> templates, Collection<Locale> locales) {
+		TemplateEngine engine = getTemplateEngine();
+		for (String template : templates) {
+			for (Locale locale : locales) {
+				try {
+					engine.process(templateName(template, locale), new Context(locale), Writer.nullWriter());
+				} catch (TemplateInputException e) {
+					throw e;
+				} catch (RuntimeException e) {
+					// the template is cached once parsed, even if it can't be rendered without
+					// its variables
+				}
+			}
 		}
+	}
+
+	/**
+	 * Reload the given template, in all its languages, on its next use.
+	 */
+	public static void clearTemplateCacheFor(String template) {
+		ICache<TemplateCacheKey, TemplateModel> cache = getTemplateEngine().getCacheManager().getTemplateCache();
+		if (cache == null) {
+			return;
+		}
+		String prefix = template + "-";
+		for (TemplateCacheKey key : cache.keySet()) {
+			String name = key.getTemplate();
+			// the languages of the template, not the ones of a template named e.g. "template-x"
+			if (name.startsWith(prefix) && name.indexOf('-', prefix.length()) < 0) {
+				cache.clearKey(key);
+			}
+		}
+	}
+
+	/**
+	 * Reload all the templates on their next use.
+	 */
+	public static void clearTemplateCache() {
+		getTemplateEngine().clearTemplateCache();
+	}
 
-		return getTemplateEngine().process(template + "-" + locale.getLanguage(), context);
+	private static String templateName(String template, Locale locale) {
+		return template + "-" + locale.getLanguage();
 	}
 }
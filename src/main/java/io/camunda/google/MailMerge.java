@@ -0,0 +1,101 @@
+package io.camunda.google;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.unbescape.html.HtmlEscape;
+
+import io.camunda.google.model.Mail;
+
+/**
+ * Personalizes one template for many recipients. The template is rendered
+ * once, the recipient variables being replaced by markers, and the rendered
+ * body is split into its static fragments. Each recipient body is then built
+ * by joining the fragments with the HTML escaped values of its variables, as
+ * th:text would insert them.
+ * <p>
+ * The recipient variables can only be displayed by the template: an
+ * expression computing on them (condition, iteration, formatting) would be
+ * evaluated on the marker.
+ */
+public class MailMerge {
+
+	private final String[] fragments;
+
+	private final String[] variables;
+
+	private final int staticLength;
+
+	/**
+	 * @param template           the template, as for
+	 *                           {@link MailBuilderUtils#buildMailBody}
+	 * @param locale             the locale of the template
+	 * @param sharedVariables    the variables common to all the recipients
+	 * @param recipientVariables the names of the variables personalized for each
+	 *                           recipient
+	 */
+	public MailMerge(String template, Locale locale, Map<String, Object> sharedVariables,
+	        Set<String> recipientVariables) {
+		String prefix = "merge" + UUID.randomUUID().toString().replace("-", "");
+		List<String> names = new ArrayList<>(recipientVariables);
+		Map<String, Object> renderVariables = new HashMap<>(sharedVariables);
+		for (int i = 0; i < names.size(); i++) {
+			renderVariables.put(names.get(i), prefix + "_" + i + "_");
+		}
+		String rendered = MailBuilderUtils.buildMailBody(template, renderVariables, locale);
+
+		List<String> staticFragments = new ArrayList<>();
+		List<String> dynamicVariables = new ArrayList<>();
+		Matcher marker = Pattern.compile(prefix + "_(\\d+)_").matcher(rendered);
+		int start = 0;
+		while (marker.find()) {
+			staticFragments.add(rendered.substring(start, marker.start()));
+			dynamicVariables.add(names.get(Integer.parseInt(marker.group(1))));
+			start = marker.end();
+		}
+		staticFragments.add(rendered.substring(start));
+		this.fragments = staticFragments.toArray(new String[0]);
+		this.variables = dynamicVariables.toArray(new String[0]);
+		this.staticLength = staticFragments.stream().mapToInt(String::length).sum();
+	}
+
+	/**
+	 * @param recipientVariables the values of the recipient variables, a missing
+	 *                           one being rendered empty
+	 * @return the body of the recipient
+	 */
+	public String render(Map<String, Object> recipientVariables) {
+		StringBuilder body = new StringBuilder(staticLength + 32 * variables.length);
+		for (int i = 0; i < variables.length; i++) {
+			body.append(fragments[i]);
+			Object value = recipientVariables.get(variables[i]);
+			if (value != null) {
+				body.append(HtmlEscape.escapeHtml4Xml(value.toString()));
+			}
+		}
+		return body.append(fragments[variables.length]).toString();
+	}
+
+	/**
+	 * Build the mails lazily, so that sending them with
+	 * {@link MailSender#sendAll(Stream)} only keeps the pending ones in memory.
+	 *
+	 * @param recipients the variables of each recipient
+	 * @param envelope   the mail of a recipient, without its body, e.g.
+	 *                   <code>vars -> new Mail.Builder().to((String) vars.get("email")).subject("News")</code>
+	 * @return the mails
+	 */
+	public Stream<Mail> merge(Stream<Map<String, Object>> recipients,
+	        Function<Map<String, Object>, Mail.Builder> envelope) {
+		return recipients.map(vars -> envelope.apply(vars).body(render(vars)).build());
+	}
+}
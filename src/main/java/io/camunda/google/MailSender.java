@@ -0,0 +1,164 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import javax.mail.MessagingException;
+
+import com.google.api.services.gmail.Gmail;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.Mail;
+import io.camunda.google.util.BoundedExecutor;
+import io.camunda.google.util.RateLimiter;
+
+/**
+ * Sends mails asynchronously in two stages: the MIME messages are built and
+ * encoded on a pool sized to the available processors while the previous
+ * ones are sent on a bounded pool, throttled to the Gmail per-user rate.
+ */
+public class MailSender {
+
+	private static volatile MailSender defaultSender;
+
+	private final BoundedExecutor mimeExecutor;
+
+	private final BoundedExecutor sendExecutor;
+
+	private final RateLimiter rateLimiter;
+
+	private final int maxPendingSends;
+
+	private final GmailClient gmailClient;
+
+	/**
+	 * @param googleWsConfig the configuration of the sender, the mails being
+	 *                       sent from the mailbox of the default user
+	 */
+	public MailSender(GoogleWsConfig googleWsConfig) {
+		this(googleWsConfig, null);
+	}
+
+	/**
+	 * @param gmailClient the mailbox sending the mails
+	 */
+	public MailSender(GmailClient gmailClient) {
+		this(gmailClient.getConfig(), gmailClient);
+	}
+
+	private MailSender(GoogleWsConfig googleWsConfig, GmailClient gmailClient) {
+		this.gmailClient = gmailClient;
+		this.mimeExecutor = new BoundedExecutor("gmail-mime", Runtime.getRuntime().availableProcessors(), false);
+		this.sendExecutor = new BoundedExecutor("gmail-send", googleWsConfig.getSendConcurrency(),
+		        googleWsConfig.isPreferVirtualThreads());
+		this.rateLimiter = new RateLimiter(googleWsConfig.getSendRatePerSecond());
+		this.maxPendingSends = googleWsConfig.getMaxPendingSends();
+	}
+
+	/**
+	 * @return the sender set with {@link #setDefault}, or else the one of the
+	 *         default Gmail client, so that the sends to the default mailbox
+	 *         share a single rate limit.
+	 */
+	public static MailSender getDefault() {
+		MailSender sender = defaultSender;
+		return sender != null ? sender : GmailClient.getDefault().getMailSender();
+	}
+
+	/**
+	 * Replace the default sender.
+	 *
+	 * @param mailSender the sender to use, or null to use the one of the default
+	 *                   Gmail client.
+	 */
+	public static void setDefault(MailSender mailSender) {
+		defaultSender = mailSender;
+	}
+
+	/**
+	 * @param mail the mail to send
+	 * @return a future completed with the Gmail message id, or exceptionally if
+	 *         the mail could not be built or sent.
+	 */
+	public CompletableFuture<String> sendAsync(Mail mail) {
+		return CompletableFuture.supplyAsync(() -> encode(mail), mimeExecutor).thenApplyAsync(this::send,
+		        sendExecutor);
+	}
+
+	/**
+	 * Send all the mails, blocking the caller while too many of them are waiting
+	 * to be sent so that a large collection does not keep all its encoded
+	 * messages in memory.
+	 *
+	 * @param mails the mails to send
+	 * @return one future per mail, in the iteration order of the collection.
+	 */
+	public List<CompletableFuture<String>> sendAll(Collection<Mail> mails) {
+		return sendAll(mails.iterator(), mails.size());
+	}
+
+	/**
+	 * Send all the mails, the stream being consumed as the mails are sent so
+	 * that only the pending ones are kept in memory.
+	 *
+	 * @param mails the mails to send
+	 * @return one future per mail, in the order of the stream.
+	 */
+	public List<CompletableFuture<String>> sendAll(Stream<Mail> mails) {
+		return sendAll(mails.iterator(), 16);
+	}
+
+	private List<CompletableFuture<String>> sendAll(Iterator<Mail> mails, int count) {
+		Semaphore pending = new Semaphore(maxPendingSends);
+		List<CompletableFuture<String>> results = new ArrayList<>(count);
+		while (mails.hasNext()) {
+			Mail mail = mails.next();
+			try {
+				pending.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				CompletableFuture<String> interrupted = new CompletableFuture<>();
+				interrupted.completeExceptionally(e);
+				results.add(interrupted);
+				continue;
+			}
+			CompletableFuture<String> result = sendAsync(mail);
+			result.whenComplete((id, error) -> pending.release());
+			results.add(result);
+		}
+		return results;
+	}
+
+	private Gmail.Users.Messages.Send encode(Mail mail) {
+		try {
+			GmailClient client = gmailClient != null ? gmailClient : GmailClient.getDefault();
+			return client.newSend(mail);
+		} catch (MessagingException | IOException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	private String send(Gmail.Users.Messages.Send send) {
+		try {
+			rateLimiter.acquire();
+			return send.execute().getId();
+		} catch (IOException | InterruptedException e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			throw new CompletionException(e);
+		}
+	}
+
+	public void shutdown() {
+		mimeExecutor.shutdown();
+		sendExecutor.shutdown();
+	}
+}
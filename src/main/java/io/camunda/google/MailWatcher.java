@@ -0,0 +1,198 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.api.services.gmail.model.WatchResponse;
+
+import io.camunda.google.model.MailNotification;
+import io.camunda.google.model.MailboxChanges;
+
+/**
+ * Delivers the changes of a mailbox as soon as Gmail notifies them. The
+ * mailbox is registered with users.watch to publish its changes to a Pub/Sub
+ * topic, the registration being renewed before it expires. Each batch of
+ * notifications read from the {@link NotificationSource} triggers one
+ * synchronization of the mailbox history, whose changes are passed to the
+ * listener and committed once it returns.
+ */
+public class MailWatcher implements AutoCloseable {
+
+	/**
+	 * Receives the changes of the watched mailbox, on the thread of the watcher.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param changes the changes since the previous call. If this method
+		 *                throws, the same changes are delivered again later.
+		 */
+		void onChanges(MailboxChanges changes) throws Exception;
+
+		/**
+		 * Called when the mailbox could not be synchronized, before retrying.
+		 * Logs the error by default.
+		 */
+		default void onError(Exception e) {
+			LOGGER.log(Level.WARNING, "Unable to synchronize the mailbox", e);
+		}
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(MailWatcher.class.getName());
+
+	private static final long POLL_TIMEOUT_MILLIS = 10000;
+
+	private static final long RETRY_DELAY_MILLIS = 5000;
+
+	private static final long RENEW_AHEAD_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private final GmailClient client;
+
+	private final String topicName;
+
+	private final String labelId;
+
+	private final MailboxSync sync;
+
+	private final NotificationSource source;
+
+	private final Listener listener;
+
+	private final Thread thread;
+
+	private volatile boolean running;
+
+	private String emailAddress;
+
+	private long renewAtMillis;
+
+	/**
+	 * @param client    the client of the mailbox
+	 * @param topicName the Pub/Sub topic Gmail publishes to, e.g.
+	 *                  projects/my-project/topics/gmail
+	 * @param labelId   the label to watch, e.g. "INBOX", null for all the messages
+	 * @param sync      the synchronization of the label
+	 * @param source    the source of the notifications published to the topic
+	 * @param listener  receives the changes
+	 */
+	public MailWatcher(GmailClient client, String topicName, String labelId, MailboxSync sync,
+	        NotificationSource source, Listener listener) {
+		this.client = client;
+		this.topicName = topicName;
+		this.labelId = labelId;
+		this.sync = sync;
+		this.source = source;
+		this.listener = listener;
+		this.thread = new Thread(this::run, "gmail-watch");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Register the watch and start delivering the changes, starting with the ones
+	 * made since the last commit.
+	 */
+	public void start() throws IOException {
+		emailAddress = client.gmail().users().getProfile(client.getUserId()).execute().getEmailAddress();
+		renew();
+		running = true;
+		thread.start();
+	}
+
+	private void run() {
+		boolean syncNeeded = true;
+		while (running) {
+			try {
+				if (System.currentTimeMillis() >= renewAtMillis) {
+					renew();
+				}
+				if (syncNeeded) {
+					synchronize();
+				}
+				List<MailNotification> polled = source.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+				List<MailNotification> consumed = ofMailbox(polled);
+				if (consumed.size() < polled.size()) {
+					List<MailNotification> others = new ArrayList<>(polled);
+					others.removeAll(consumed);
+					source.release(others);
+				}
+				if (!consumed.isEmpty()) {
+					source.acknowledge(consumed);
+				}
+				syncNeeded = !consumed.isEmpty();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception e) {
+				if (!running) {
+					return;
+				}
+				listener.onError(e);
+				syncNeeded = true;
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void synchronize() throws Exception {
+		MailboxChanges changes = sync.fetchChanges();
+		if (!changes.isEmpty()) {
+			listener.onChanges(changes);
+		}
+		sync.commit(changes);
+	}
+
+	/**
+	 * @return the notifications of the watched mailbox, the other ones being
+	 *         released to the other watchers of the source
+	 */
+	private List<MailNotification> ofMailbox(List<MailNotification> notifications) {
+		List<MailNotification> ofMailbox = new ArrayList<>();
+		for (MailNotification notification : notifications) {
+			if (notification.getEmailAddress() == null
+			        || notification.getEmailAddress().equalsIgnoreCase(emailAddress)) {
+				ofMailbox.add(notification);
+			}
+		}
+		return ofMailbox;
+	}
+
+	private void renew() throws IOException {
+		WatchResponse response = client.watch(topicName, labelId == null ? null : List.of(labelId));
+		long now = System.currentTimeMillis();
+		long expiration = response.getExpiration() != null ? response.getExpiration()
+		        : now + TimeUnit.DAYS.toMillis(7);
+		renewAtMillis = Math.max(now + (expiration - now) / 2, expiration - RENEW_AHEAD_MILLIS);
+	}
+
+	/**
+	 * Stop delivering the changes, unregister the watch and close the source.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join(POLL_TIMEOUT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			client.stopWatch();
+		} finally {
+			source.close();
+		}
+	}
+
+	public String getEmailAddress() {
+		return emailAddress;
+	}
+}
@@ -0,0 +1,236 @@
+package io.camunda.google;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.services.gmail.Gmail;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryLabelAdded;
+import com.google.api.services.gmail.model.HistoryLabelRemoved;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.HistoryMessageDeleted;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.Profile;
+
+import io.camunda.google.model.MailboxChanges;
+
+/**
+ * Incremental synchronization of a label of a mailbox, based on the Gmail
+ * history. Each poll only lists the messages added, deleted or relabeled since
+ * the history id of the previous one, which is kept in a {@link DataStore} so
+ * that it survives restarts. The first poll, or a poll after the history id
+ * expired (Gmail keeps about a week of history), lists the whole label.
+ * <p>
+ * The history id is only saved when the changes are committed, so that changes
+ * fetched but not processed, e.g. because of a crash, are fetched again.
+ */
+public class MailboxSync {
+
+	public static final String CHECKPOINT_STORE_ID = "gmailHistory";
+
+	private final GmailClient client;
+
+	private final String labelId;
+
+	private final DataStore<String> checkpoints;
+
+	private String checkpointKey;
+
+	/**
+	 * Synchronize a label, keeping the history ids in the tokens directory.
+	 *
+	 * @param client  the client of the mailbox
+	 * @param labelId the id of the label, e.g. "INBOX", null for all the messages
+	 */
+	public MailboxSync(GmailClient client, String labelId) throws IOException {
+		this(client, labelId, new FileDataStoreFactory(new File(client.getConfig().getTokensDirectoryPath()))
+		        .getDataStore(CHECKPOINT_STORE_ID));
+	}
+
+	/**
+	 * @param client      the client of the mailbox
+	 * @param labelId     the id of the label, e.g. "INBOX", null for all the
+	 *                    messages
+	 * @param checkpoints the store of the history ids, keyed by mailbox address
+	 *                    and label
+	 */
+	public MailboxSync(GmailClient client, String labelId, DataStore<String> checkpoints) {
+		this.client = client;
+		this.labelId = labelId;
+		this.checkpoints = checkpoints;
+	}
+
+	/**
+	 * Fetch the changes since the last commit, and commit them.
+	 */
+	public synchronized MailboxChanges poll() throws IOException {
+		MailboxChanges changes = fetchChanges();
+		commit(changes);
+		return changes;
+	}
+
+	/**
+	 * Fetch the changes since the last commit, without committing them.
+	 */
+	public synchronized MailboxChanges fetchChanges() throws IOException {
+		String checkpoint = checkpoints.get(getCheckpointKey());
+		if (checkpoint == null) {
+			return fullSync();
+		}
+		try {
+			return fetchChanges(new BigInteger(checkpoint));
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404) {
+				// the history id is too old
+				return fullSync();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Save the history id of the changes, so that the next poll starts from it.
+	 */
+	public synchronized void commit(MailboxChanges changes) throws IOException {
+		if (changes.getHistoryId() != null) {
+			checkpoints.set(getCheckpointKey(), changes.getHistoryId().toString());
+		}
+	}
+
+	/**
+	 * Forget the history id, so that the next poll lists the whole label.
+	 */
+	public synchronized void reset() throws IOException {
+		checkpoints.delete(getCheckpointKey());
+	}
+
+	private MailboxChanges fetchChanges(BigInteger startHistoryId) throws IOException {
+		Gmail gmail = client.gmail();
+		Map<String, Message> added = new LinkedHashMap<>();
+		Set<String> deleted = new LinkedHashSet<>();
+		Map<String, Set<String>> labelsAdded = new LinkedHashMap<>();
+		Map<String, Set<String>> labelsRemoved = new LinkedHashMap<>();
+		BigInteger historyId = startHistoryId;
+		String pageToken = null;
+		do {
+			ListHistoryResponse response = gmail.users().history().list(client.getUserId())
+			        .setStartHistoryId(startHistoryId).setLabelId(labelId)
+			        .setMaxResults(client.getConfig().getPageSize()).setPageToken(pageToken).execute();
+			if (response.getHistory() != null) {
+				for (History history : response.getHistory()) {
+					apply(history, added, deleted, labelsAdded, labelsRemoved);
+				}
+			}
+			if (response.getHistoryId() != null) {
+				historyId = response.getHistoryId();
+			}
+			pageToken = response.getNextPageToken();
+		} while (pageToken != null);
+
+		MailboxChanges changes = new MailboxChanges();
+		changes.setHistoryId(historyId);
+		changes.getAdded().addAll(added.values());
+		changes.getDeleted().addAll(deleted);
+		labelsAdded.forEach((id, labels) -> changes.getLabelsAdded().put(id, new ArrayList<>(labels)));
+		labelsRemoved.forEach((id, labels) -> changes.getLabelsRemoved().put(id, new ArrayList<>(labels)));
+		return changes;
+	}
+
+	/**
+	 * Merge a history record into the changes. A message added then deleted is
+	 * not reported, nor are the label changes of new or deleted messages, and a
+	 * label added then removed cancels out.
+	 */
+	private static void apply(History history, Map<String, Message> added, Set<String> deleted,
+	        Map<String, Set<String>> labelsAdded, Map<String, Set<String>> labelsRemoved) {
+		if (history.getMessagesAdded() != null) {
+			for (HistoryMessageAdded messageAdded : history.getMessagesAdded()) {
+				added.put(messageAdded.getMessage().getId(), messageAdded.getMessage());
+			}
+		}
+		if (history.getMessagesDeleted() != null) {
+			for (HistoryMessageDeleted messageDeleted : history.getMessagesDeleted()) {
+				String id = messageDeleted.getMessage().getId();
+				if (added.remove(id) == null) {
+					deleted.add(id);
+				}
+				labelsAdded.remove(id);
+				labelsRemoved.remove(id);
+			}
+		}
+		if (history.getLabelsAdded() != null) {
+			for (HistoryLabelAdded labelAdded : history.getLabelsAdded()) {
+				relabel(labelAdded.getMessage().getId(), labelAdded.getLabelIds(), labelsAdded, labelsRemoved, added,
+				        deleted);
+			}
+		}
+		if (history.getLabelsRemoved() != null) {
+			for (HistoryLabelRemoved labelRemoved : history.getLabelsRemoved()) {
+				relabel(labelRemoved.getMessage().getId(), labelRemoved.getLabelIds(), labelsRemoved, labelsAdded,
+				        added, deleted);
+			}
+		}
+	}
+
+	private static void relabel(String id, List<String> labelIds, Map<String, Set<String>> changed,
+	        Map<String, Set<String>> reverted, Map<String, Message> added, Set<String> deleted) {
+		if (labelIds == null || added.containsKey(id) || deleted.contains(id)) {
+			return;
+		}
+		for (String label : labelIds) {
+			Set<String> revertedLabels = reverted.get(id);
+			if (revertedLabels != null && revertedLabels.remove(label)) {
+				if (revertedLabels.isEmpty()) {
+					reverted.remove(id);
+				}
+			} else {
+				changed.computeIfAbsent(id, key -> new LinkedHashSet<>()).add(label);
+			}
+		}
+	}
+
+	/**
+	 * List the whole label. The history id is read first, so that no change made
+	 * while listing is missed by the next poll.
+	 */
+	private MailboxChanges fullSync() throws IOException {
+		Gmail gmail = client.gmail();
+		MailboxChanges changes = new MailboxChanges();
+		changes.setFullSync(true);
+		changes.setHistoryId(gmail.users().getProfile(client.getUserId()).execute().getHistoryId());
+		String pageToken = null;
+		do {
+			Gmail.Users.Messages.List list = gmail.users().messages().list(client.getUserId())
+			        .setMaxResults(client.getConfig().getPageSize()).setPageToken(pageToken);
+			if (labelId != null) {
+				list.setLabelIds(List.of(labelId));
+			}
+			ListMessagesResponse response = list.execute();
+			if (response.getMessages() != null) {
+				changes.getAdded().addAll(response.getMessages());
+			}
+			pageToken = response.getNextPageToken();
+		} while (pageToken != null);
+		return changes;
+	}
+
+	private String getCheckpointKey() throws IOException {
+		if (checkpointKey == null) {
+			Profile profile = client.gmail().users().getProfile(client.getUserId()).execute();
+			checkpointKey = profile.getEmailAddress() + ":" + (labelId == null ? "*" : labelId);
+		}
+		return checkpointKey;
+	}
+}
@@ -0,0 +1,122 @@
+package io.camunda.google;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import io.camunda.google.model.Mail;
+import io.camunda.google.util.ExpiringCache;
+import io.camunda.google.util.LazyHolder;
+
+/**
+ * Builds the MIME messages of the mails. Thread safe, it keeps one mail
+ * session for all the messages and the parsed addresses of the last recipient
+ * lists, mailings often sending to the same lists.
+ */
+public class MimeMessageFactory {
+
+	public static final int DEFAULT_ADDRESS_CACHE_SIZE = 1000;
+
+	private static final LazyHolder<MimeMessageFactory> defaultFactory = new LazyHolder<>(MimeMessageFactory::new);
+
+	private static final InternetAddress FROM_ME = new InternetAddress();
+
+	static {
+		FROM_ME.setAddress("me");
+	}
+
+	private final Session session;
+
+	private final ExpiringCache<List<String>, InternetAddress[]> addresses;
+
+	public MimeMessageFactory() {
+		this(new Properties(), DEFAULT_ADDRESS_CACHE_SIZE);
+	}
+
+	/**
+	 * @param sessionProperties the properties of the mail session
+	 * @param addressCacheSize  the number of recipient lists whose parsed
+	 *                          addresses are kept
+	 */
+	public MimeMessageFactory(Properties sessionProperties, int addressCacheSize) {
+		this.session = Session.getInstance(sessionProperties);
+		this.addresses = new ExpiringCache<>(addressCacheSize, 0);
+	}
+
+	public static MimeMessageFactory getDefault() {
+		return defaultFactory.get();
+	}
+
+	/**
+	 * Replace the default factory.
+	 *
+	 * @param factory the factory to use, or null to build a default one on next
+	 *                use.
+	 */
+	public static void setDefault(MimeMessageFactory factory) {
+		defaultFactory.set(factory);
+	}
+
+	public Session getSession() {
+		return session;
+	}
+
+	public MimeMessage createMimeMessage(Mail mail) throws MessagingException {
+		MimeMessage email = new MimeMessage(session);
+		MimeMessageUtils messageHelper = null;
+		if (mail.getAttachments() != null && mail.getAttachments().length > 0) {
+			messageHelper = new MimeMessageUtils(email, true);
+			for (File attachment : mail.getAttachments()) {
+				messageHelper.addAttachment(attachment.getName(), attachment);
+			}
+
+		} else {
+			messageHelper = new MimeMessageUtils(email, false);
+		}
+		messageHelper.setFrom(FROM_ME);
+		messageHelper.setTo(parse(mail.getTo()));
+		if (mail.getBcc() != null && mail.getBcc().length > 0) {
+			messageHelper.setBcc(parse(mail.getBcc()));
+		}
+		if (mail.getCc() != null && mail.getCc().length > 0) {
+			messageHelper.setCc(parse(mail.getCc()));
+		}
+		messageHelper.setSubject(mail.getSubject());
+		if (mail.getBodyTemplate() != null) {
+			messageHelper.setContent(new TemplateDataSource(mail.getBodyTemplate(), mail.getBodyVariables(),
+			        mail.getBodyLocale()).getDataHandler(), "quoted-printable");
+		} else {
+			messageHelper.setText(mail.getBody(), true);
+		}
+
+		return messageHelper.getMimeMessage();
+	}
+
+	/**
+	 * Parse each recipient as a single address. The returned array is shared
+	 * with the next mails to the same recipients: the message only keeps its
+	 * text in the header.
+	 */
+	private InternetAddress[] parse(String[] recipients) throws AddressException {
+		List<String> key = List.of(recipients);
+		InternetAddress[] parsed = addresses.get(key);
+		if (parsed == null) {
+			parsed = new InternetAddress[recipients.length];
+			for (int i = 0; i < recipients.length; i++) {
+				InternetAddress[] address = InternetAddress.parse(recipients[i]);
+				if (address.length != 1) {
+					throw new AddressException("Illegal address", recipients[i]);
+				}
+				parsed[i] = address[0];
+			}
+			addresses.put(key, parsed);
+		}
+		return parsed;
+	}
+}
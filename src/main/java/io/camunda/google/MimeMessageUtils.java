@@ -84,12 +84,16 @@ public class MimeMessageUtils {
 
 	private static final String HEADER_PRIORITY = "X-Priority";
 
+	private static final String HEADER_CONTENT_TRANSFER_ENCODING = "Content-Transfer-Encoding";
+
 	private final MimeMessage mimeMessage;
 
 	private MimeMultipart rootMimeMultipart;
 
 	private MimeMultipart mimeMultipart;
 
+	private MimeBodyPart mainPart;
+
 	private final String encoding;
 
 	private boolean encodeFilenames = false;
@@ -535,7 +539,34 @@ public class MimeMessageUtils {
 		messageBody.addBodyPart(htmlTextPart);
 	}
 
+	/**
+	 * Set the given content directly in non-multipart mode or as default body
+	 * part in multipart mode. The transfer encoding is set explicitly so that
+	 * the content is only read when the message is written.
+	 * 
+	 * @param content          the content of the message, with its content type
+	 * @param transferEncoding the Content-Transfer-Encoding, e.g.
+	 *                         "quoted-printable"
+	 * @throws MessagingException in case of errors
+	 */
+	public void setContent(DataHandler content, String transferEncoding) throws MessagingException {
+		MimePart partToUse;
+		if (isMultipart()) {
+			partToUse = getMainPart();
+		} else {
+			partToUse = this.mimeMessage;
+		}
+		partToUse.setDataHandler(content);
+		partToUse.setHeader(HEADER_CONTENT_TRANSFER_ENCODING, transferEncoding);
+	}
+
+	/**
+	 * The part of the text, found or created on first use then remembered.
+	 */
 	private MimeBodyPart getMainPart() throws MessagingException {
+		if (this.mainPart != null) {
+			return this.mainPart;
+		}
 		MimeMultipart mimeMultipart = getMimeMultipart();
 		MimeBodyPart bodyPart = null;
 		for (int i = 0; i < mimeMultipart.getCount(); i++) {
@@ -549,6 +580,7 @@ public class MimeMessageUtils {
 			mimeMultipart.addBodyPart(mimeBodyPart);
 			bodyPart = mimeBodyPart;
 		}
+		this.mainPart = bodyPart;
 		return bodyPart;
 	}
 
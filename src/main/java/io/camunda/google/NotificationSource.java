@@ -0,0 +1,44 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.camunda.google.model.MailNotification;
+
+/**
+ * Source of the notifications published by Gmail for the watched mailboxes,
+ * e.g. a Pub/Sub subscription.
+ */
+public interface NotificationSource extends AutoCloseable {
+
+	/**
+	 * Wait for notifications.
+	 *
+	 * @param timeout the maximum time to wait
+	 * @param unit    the unit of the timeout
+	 * @return the pending notifications, an empty list if none arrived in time
+	 */
+	List<MailNotification> poll(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+	/**
+	 * Acknowledge the notifications consumed by the caller.
+	 *
+	 * @param notifications notifications returned by {@link #poll}
+	 */
+	default void acknowledge(List<MailNotification> notifications) throws IOException {
+	}
+
+	/**
+	 * Hand back the notifications the caller does not consume, e.g. the ones of
+	 * other mailboxes, so that the other readers of the source get them right
+	 * away.
+	 *
+	 * @param notifications notifications returned by {@link #poll}
+	 */
+	default void release(List<MailNotification> notifications) throws IOException {
+	}
+
+	@Override
+	void close() throws IOException;
+}
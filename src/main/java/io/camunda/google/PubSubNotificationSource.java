@@ -0,0 +1,163 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.util.Key;
+
+import io.camunda.google.model.MailNotification;
+
+/**
+ * Notification source pulling the messages of a Pub/Sub subscription through
+ * the Pub/Sub REST API, with the transport and credential of the given
+ * clients. The credential needs the https://www.googleapis.com/auth/pubsub
+ * scope. Only the notifications acknowledged by the caller are acknowledged to
+ * Pub/Sub. The released ones, e.g. for other mailboxes, get a zero ack deadline
+ * so that Pub/Sub delivers them again at once, which lets several watchers
+ * share a subscription. One subscription per mailbox still saves these
+ * redeliveries.
+ */
+public class PubSubNotificationSource implements NotificationSource {
+
+	public static final String PUBSUB_ROOT_URL = "https://pubsub.googleapis.com/";
+
+	private static final int MAX_MESSAGES = 100;
+
+	public static class PullResponse extends GenericJson {
+		@Key
+		private List<ReceivedMessage> receivedMessages;
+	}
+
+	public static class ReceivedMessage extends GenericJson {
+		@Key
+		private String ackId;
+		@Key
+		private PubsubMessage message;
+	}
+
+	public static class PubsubMessage extends GenericJson {
+		@Key
+		private String data;
+	}
+
+	public static class Notification extends GenericJson {
+		@Key
+		private String emailAddress;
+		@Key
+		private BigInteger historyId;
+	}
+
+	private final HttpRequestFactory requestFactory;
+
+	private final String rootUrl;
+
+	private final String subscription;
+
+	/**
+	 * @param clients      the clients whose transport and credential are used
+	 * @param subscription the subscription, e.g.
+	 *                     projects/my-project/subscriptions/gmail
+	 */
+	public PubSubNotificationSource(GoogleClients clients, String subscription) {
+		this(clients, PUBSUB_ROOT_URL, subscription);
+	}
+
+	/**
+	 * @param clients      the clients whose transport and credential are used
+	 * @param rootUrl      the root URL of the Pub/Sub API, e.g. the one of the
+	 *                     Pub/Sub emulator
+	 * @param subscription the subscription, e.g.
+	 *                     projects/my-project/subscriptions/gmail
+	 */
+	public PubSubNotificationSource(GoogleClients clients, String rootUrl, String subscription) {
+		this.requestFactory = clients.getTransport().createRequestFactory(clients.getRequestInitializer());
+		this.rootUrl = rootUrl.endsWith("/") ? rootUrl : rootUrl + "/";
+		this.subscription = subscription;
+	}
+
+	@Override
+	public List<MailNotification> poll(long timeout, TimeUnit unit) throws IOException {
+		HttpRequest pull = post("pull", Map.of("maxMessages", MAX_MESSAGES));
+		pull.setReadTimeout((int) Math.min(Integer.MAX_VALUE, unit.toMillis(timeout)));
+		PullResponse response;
+		try {
+			response = pull.execute().parseAs(PullResponse.class);
+		} catch (SocketTimeoutException e) {
+			return List.of();
+		}
+		List<MailNotification> notifications = new ArrayList<>();
+		if (response.receivedMessages == null || response.receivedMessages.isEmpty()) {
+			return notifications;
+		}
+		List<String> emptyAckIds = new ArrayList<>();
+		for (ReceivedMessage received : response.receivedMessages) {
+			if (received.message != null && received.message.data != null) {
+				String json = new String(Base64.getDecoder().decode(received.message.data), StandardCharsets.UTF_8);
+				Notification notification = GoogleAuthUtils.JSON_FACTORY.fromString(json, Notification.class);
+				MailNotification mailNotification = new MailNotification(notification.emailAddress,
+				        notification.historyId);
+				mailNotification.setAckId(received.ackId);
+				notifications.add(mailNotification);
+			} else {
+				// nobody can consume it
+				emptyAckIds.add(received.ackId);
+			}
+		}
+		acknowledgeIds(emptyAckIds);
+		return notifications;
+	}
+
+	@Override
+	public void acknowledge(List<MailNotification> notifications) throws IOException {
+		acknowledgeIds(ackIds(notifications));
+	}
+
+	@Override
+	public void release(List<MailNotification> notifications) throws IOException {
+		List<String> ackIds = ackIds(notifications);
+		if (!ackIds.isEmpty()) {
+			post("modifyAckDeadline", Map.of("ackIds", ackIds, "ackDeadlineSeconds", 0)).execute().disconnect();
+		}
+	}
+
+	private static List<String> ackIds(List<MailNotification> notifications) {
+		List<String> ackIds = new ArrayList<>();
+		for (MailNotification notification : notifications) {
+			if (notification.getAckId() != null) {
+				ackIds.add(notification.getAckId());
+			}
+		}
+		return ackIds;
+	}
+
+	private void acknowledgeIds(List<String> ackIds) throws IOException {
+		if (!ackIds.isEmpty()) {
+			post("acknowledge", Map.of("ackIds", ackIds)).execute().disconnect();
+		}
+	}
+
+	private HttpRequest post(String method, Map<String, Object> body) throws IOException {
+		return requestFactory
+		        .buildPostRequest(new GenericUrl(rootUrl + "v1/" + subscription + ":" + method),
+		                new JsonHttpContent(GoogleAuthUtils.JSON_FACTORY, body))
+		        .setParser(new JsonObjectParser(GoogleAuthUtils.JSON_FACTORY));
+	}
+
+	@Override
+	public void close() {
+		// nothing to release, the transport is shared
+	}
+}
@@ -0,0 +1,177 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Address;
+import javax.mail.Header;
+import javax.mail.Message.RecipientType;
+import javax.mail.MessagingException;
+import javax.mail.Multipart;
+import javax.mail.Part;
+import javax.mail.Session;
+import javax.mail.internet.ContentType;
+import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeUtility;
+
+import com.google.api.services.gmail.model.Message;
+
+import io.camunda.google.model.Attachment;
+import io.camunda.google.model.ReceivedMail;
+import io.camunda.google.util.AsciiInputStream;
+
+/**
+ * Parses messages read in the raw format. The base64url content is decoded
+ * while the MIME parser reads it: the message is held once, as the bytes of
+ * the MIME message, rather than as JSON parts or decoded strings, and the
+ * attachments are only decoded from these bytes when accessed.
+ */
+public class RawMailParser {
+
+	private static final Session SESSION = Session.getInstance(new Properties());
+
+	private RawMailParser() {
+	}
+
+	/**
+	 * @param message        a Gmail message read in the raw format
+	 * @param spillThreshold size in bytes above which an attachment is kept in a
+	 *                       temporary file once accessed, -1 to keep it in memory
+	 * @return the mail
+	 */
+	public static ReceivedMail parse(Message message, long spillThreshold) throws IOException {
+		ReceivedMail mail;
+		try (InputStream rfc822 = Base64.getUrlDecoder().wrap(new AsciiInputStream(message.getRaw()))) {
+			mail = parse(rfc822, spillThreshold);
+		}
+		mail.setId(message.getId());
+		mail.setThreadId(message.getThreadId());
+		mail.setLabelIds(message.getLabelIds());
+		return mail;
+	}
+
+	/**
+	 * @param rfc822         the RFC 822 message
+	 * @param spillThreshold size in bytes above which an attachment is kept in a
+	 *                       temporary file once accessed, -1 to keep it in memory
+	 * @return the mail
+	 */
+	public static ReceivedMail parse(InputStream rfc822, long spillThreshold) throws IOException {
+		try {
+			MimeMessage mimeMessage = new MimeMessage(SESSION, rfc822);
+			ReceivedMail mail = new ReceivedMail();
+			for (Enumeration<Header> headers = mimeMessage.getAllHeaders(); headers.hasMoreElements();) {
+				Header header = headers.nextElement();
+				mail.addHeader(header.getName(), header.getValue());
+			}
+			mail.setSubject(mimeMessage.getSubject());
+			Address[] from = mimeMessage.getFrom();
+			if (from != null && from.length > 0) {
+				mail.setFrom(from[0].toString());
+			}
+			mail.setTo(addresses(mimeMessage.getRecipients(RecipientType.TO)));
+			mail.setCc(addresses(mimeMessage.getRecipients(RecipientType.CC)));
+			mail.setBcc(addresses(mimeMessage.getRecipients(RecipientType.BCC)));
+
+			List<Attachment> attachments = new ArrayList<>();
+			readPart(mimeMessage, mail, attachments, spillThreshold);
+			if (!attachments.isEmpty()) {
+				mail.setAttachments(attachments);
+			}
+			return mail;
+		} catch (MessagingException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Walk the MIME tree: the HTML text is preferred to the plain text as body,
+	 * and the parts with a file name become attachments.
+	 */
+	private static void readPart(Part part, ReceivedMail mail, List<Attachment> attachments, long spillThreshold)
+	        throws MessagingException, IOException {
+		if (part.isMimeType("multipart/*")) {
+			Multipart multipart = (Multipart) part.getContent();
+			for (int i = 0; i < multipart.getCount(); i++) {
+				readPart(multipart.getBodyPart(i), mail, attachments, spillThreshold);
+			}
+		} else if (part.getFileName() != null || Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition())) {
+			attachments.add(getAttachment(part, spillThreshold));
+		} else if (part.isMimeType("text/html")) {
+			mail.setBody(text(part));
+		} else if (part.isMimeType("text/plain") && mail.getBody() == null) {
+			mail.setBody(text(part));
+		}
+	}
+
+	/**
+	 * JavaMail only decodes the text of the charsets it knows: the other ones are
+	 * decoded with the declared charset if the JVM supports it, else as UTF-8.
+	 */
+	private static String text(Part part) throws MessagingException, IOException {
+		try {
+			Object content = part.getContent();
+			if (content instanceof String) {
+				return (String) content;
+			}
+		} catch (UnsupportedEncodingException e) {
+			// unknown charset, decoded below
+		}
+		Charset charset = StandardCharsets.UTF_8;
+		String charsetName = new ContentType(part.getContentType()).getParameter("charset");
+		if (charsetName != null) {
+			try {
+				charset = Charset.forName(MimeUtility.javaCharset(charsetName));
+			} catch (IllegalArgumentException e) {
+				// not supported by the JVM either
+			}
+		}
+		try (InputStream in = part.getInputStream()) {
+			return new String(in.readAllBytes(), charset);
+		}
+	}
+
+	private static Attachment getAttachment(Part part, long spillThreshold) throws MessagingException {
+		Attachment attachment = new Attachment();
+		attachment.setName(decode(part.getFileName()));
+		attachment.setContentType(new ContentType(part.getContentType()).getBaseType());
+		attachment.setLoader(() -> {
+			try {
+				return part.getInputStream();
+			} catch (MessagingException e) {
+				throw new IOException(e);
+			}
+		}, spillThreshold);
+		return attachment;
+	}
+
+	private static String[] addresses(Address[] addresses) {
+		if (addresses == null) {
+			return null;
+		}
+		String[] values = new String[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			values[i] = addresses[i].toString();
+		}
+		return values;
+	}
+
+	private static String decode(String text) {
+		if (text == null) {
+			return null;
+		}
+		try {
+			return MimeUtility.decodeText(text);
+		} catch (UnsupportedEncodingException e) {
+			return text;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package io.camunda.google;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
+
+/**
+ * HTML body rendered from a template while the MIME message is written: the
+ * template engine writes to the encoding stream of the part, so the body is
+ * never held as a String. Reading the content, e.g. with getContent, renders it
+ * in memory instead.
+ */
+public class TemplateDataSource implements DataSource {
+
+	public static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
+	private final String template;
+
+	private final Map<String, Object> variables;
+
+	private final Locale locale;
+
+	/**
+	 * @param template  the template, as for {@link MailBuilderUtils#buildMailBody}
+	 * @param variables the variables of the template
+	 * @param locale    the locale of the template
+	 */
+	public TemplateDataSource(String template, Map<String, Object> variables, Locale locale) {
+		this.template = template;
+		this.variables = variables;
+		this.locale = locale;
+	}
+
+	/**
+	 * Render the template to the given stream, which is left open.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		MailBuilderUtils.buildMailBody(template, variables, locale, writer);
+		writer.flush();
+	}
+
+	/**
+	 * @return a data handler whose writeTo renders the template to the stream
+	 */
+	public DataHandler getDataHandler() {
+		return new DataHandler(this) {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				TemplateDataSource.this.writeTo(out);
+			}
+		};
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return new ByteArrayInputStream(
+		        MailBuilderUtils.buildMailBody(template, variables, locale).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		throw new IOException("A template body is read only");
+	}
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	@Override
+	public String getName() {
+		return template;
+	}
+}
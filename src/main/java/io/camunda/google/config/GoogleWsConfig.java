@@ -17,6 +17,62 @@ public class GoogleWsConfig {
 
 	private String credentialsFilePath = "/client_secret_google_api.json";
 
+	private int sendConcurrency = 10;
+
+	// Gmail allows 250 quota units per user and per second, a send costs 100
+	private double sendRatePerSecond = 2.5;
+
+	private int maxPendingSends = 100;
+
+	private boolean preferVirtualThreads = true;
+
+	// Gmail accepts up to 100 calls per batch but advises not to exceed 50
+	private int batchSize = 50;
+
+	private long pageSize = 100;
+
+	private int attachmentDownloadConcurrency = 16;
+
+	private int attachmentDownloadsPerMessage = 4;
+
+	private boolean lazyAttachments = true;
+
+	private long attachmentSpillThreshold = 1024 * 1024;
+
+	private int downloadChunkSize = 8 * 1024 * 1024;
+
+	private int downloadMaxResumes = 3;
+
+	private int uploadChunkSize = 8 * 1024 * 1024;
+
+	private long directUploadThreshold = 5 * 1024 * 1024;
+
+	private int retryMaxElapsedTimeMillis = 60000;
+
+	private int transferConcurrency = 4;
+
+	private int folderCacheSize = 1000;
+
+	private long folderCacheTtlMillis = 10 * 60 * 1000;
+
+	private long tokenRefreshAheadSeconds = 300;
+
+	private String serviceAccountKeyPath;
+
+	private String delegatedUser;
+
+	private int credentialCacheSize = 1000;
+
+	private int clientCacheSize = 1000;
+
+	private double gmailRatePerSecond = 50;
+
+	private double driveRatePerSecond = 20;
+
+	private double sheetsRatePerSecond = 1;
+
+	private long mediaSendThreshold = 1024 * 1024;
+
 	public String getApplicationName() {
 		return applicationName;
 	}
@@ -56,4 +112,261 @@ public class GoogleWsConfig {
 	public void setCredentialsFilePath(String credentialsFilePath) {
 		this.credentialsFilePath = credentialsFilePath;
 	}
+
+	public int getSendConcurrency() {
+		return sendConcurrency;
+	}
+
+	public void setSendConcurrency(int sendConcurrency) {
+		this.sendConcurrency = sendConcurrency;
+	}
+
+	public double getSendRatePerSecond() {
+		return sendRatePerSecond;
+	}
+
+	public void setSendRatePerSecond(double sendRatePerSecond) {
+		this.sendRatePerSecond = sendRatePerSecond;
+	}
+
+	public int getMaxPendingSends() {
+		return maxPendingSends;
+	}
+
+	public void setMaxPendingSends(int maxPendingSends) {
+		this.maxPendingSends = maxPendingSends;
+	}
+
+	public boolean isPreferVirtualThreads() {
+		return preferVirtualThreads;
+	}
+
+	public void setPreferVirtualThreads(boolean preferVirtualThreads) {
+		this.preferVirtualThreads = preferVirtualThreads;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(long pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	public int getAttachmentDownloadConcurrency() {
+		return attachmentDownloadConcurrency;
+	}
+
+	public void setAttachmentDownloadConcurrency(int attachmentDownloadConcurrency) {
+		this.attachmentDownloadConcurrency = attachmentDownloadConcurrency;
+	}
+
+	public int getAttachmentDownloadsPerMessage() {
+		return attachmentDownloadsPerMessage;
+	}
+
+	public void setAttachmentDownloadsPerMessage(int attachmentDownloadsPerMessage) {
+		this.attachmentDownloadsPerMessage = attachmentDownloadsPerMessage;
+	}
+
+	public boolean isLazyAttachments() {
+		return lazyAttachments;
+	}
+
+	public void setLazyAttachments(boolean lazyAttachments) {
+		this.lazyAttachments = lazyAttachments;
+	}
+
+	public long getAttachmentSpillThreshold() {
+		return attachmentSpillThreshold;
+	}
+
+	public void setAttachmentSpillThreshold(long attachmentSpillThreshold) {
+		this.attachmentSpillThreshold = attachmentSpillThreshold;
+	}
+
+	public int getDownloadChunkSize() {
+		return downloadChunkSize;
+	}
+
+	public void setDownloadChunkSize(int downloadChunkSize) {
+		this.downloadChunkSize = downloadChunkSize;
+	}
+
+	public int getDownloadMaxResumes() {
+		return downloadMaxResumes;
+	}
+
+	public void setDownloadMaxResumes(int downloadMaxResumes) {
+		this.downloadMaxResumes = downloadMaxResumes;
+	}
+
+	public int getUploadChunkSize() {
+		return uploadChunkSize;
+	}
+
+	/**
+	 * @param uploadChunkSize the size of the chunks of resumable uploads, a
+	 *                        multiple of 256 KB
+	 */
+	public void setUploadChunkSize(int uploadChunkSize) {
+		this.uploadChunkSize = uploadChunkSize;
+	}
+
+	public long getDirectUploadThreshold() {
+		return directUploadThreshold;
+	}
+
+	public void setDirectUploadThreshold(long directUploadThreshold) {
+		this.directUploadThreshold = directUploadThreshold;
+	}
+
+	public int getRetryMaxElapsedTimeMillis() {
+		return retryMaxElapsedTimeMillis;
+	}
+
+	public void setRetryMaxElapsedTimeMillis(int retryMaxElapsedTimeMillis) {
+		this.retryMaxElapsedTimeMillis = retryMaxElapsedTimeMillis;
+	}
+
+	public int getTransferConcurrency() {
+		return transferConcurrency;
+	}
+
+	public void setTransferConcurrency(int transferConcurrency) {
+		this.transferConcurrency = transferConcurrency;
+	}
+
+	public int getFolderCacheSize() {
+		return folderCacheSize;
+	}
+
+	public void setFolderCacheSize(int folderCacheSize) {
+		this.folderCacheSize = folderCacheSize;
+	}
+
+	public long getFolderCacheTtlMillis() {
+		return folderCacheTtlMillis;
+	}
+
+	public void setFolderCacheTtlMillis(long folderCacheTtlMillis) {
+		this.folderCacheTtlMillis = folderCacheTtlMillis;
+	}
+
+	public long getTokenRefreshAheadSeconds() {
+		return tokenRefreshAheadSeconds;
+	}
+
+	public void setTokenRefreshAheadSeconds(long tokenRefreshAheadSeconds) {
+		this.tokenRefreshAheadSeconds = tokenRefreshAheadSeconds;
+	}
+
+	/**
+	 * @return true when a service account key is configured, replacing the
+	 *         interactive installed application flow
+	 */
+	public boolean isServiceAccount() {
+		return serviceAccountKeyPath != null;
+	}
+
+	public String getServiceAccountKeyPath() {
+		return serviceAccountKeyPath;
+	}
+
+	/**
+	 * @param serviceAccountKeyPath the classpath resource or file of the JSON key
+	 *                              of a service account with domain-wide
+	 *                              delegation
+	 */
+	public void setServiceAccountKeyPath(String serviceAccountKeyPath) {
+		this.serviceAccountKeyPath = serviceAccountKeyPath;
+	}
+
+	public String getDelegatedUser() {
+		return delegatedUser;
+	}
+
+	/**
+	 * @param delegatedUser the email of the user impersonated by default with a
+	 *                      service account, null to act as the service account
+	 */
+	public void setDelegatedUser(String delegatedUser) {
+		this.delegatedUser = delegatedUser;
+	}
+
+	public int getCredentialCacheSize() {
+		return credentialCacheSize;
+	}
+
+	public void setCredentialCacheSize(int credentialCacheSize) {
+		this.credentialCacheSize = credentialCacheSize;
+	}
+
+	public int getClientCacheSize() {
+		return clientCacheSize;
+	}
+
+	public void setClientCacheSize(int clientCacheSize) {
+		this.clientCacheSize = clientCacheSize;
+	}
+
+	public double getGmailRatePerSecond() {
+		return gmailRatePerSecond;
+	}
+
+	/**
+	 * @param gmailRatePerSecond the maximum Gmail calls per second of a user, 0 or
+	 *                           less to disable throttling. Lowered automatically
+	 *                           while Gmail reports the quota as exceeded.
+	 */
+	public void setGmailRatePerSecond(double gmailRatePerSecond) {
+		this.gmailRatePerSecond = gmailRatePerSecond;
+	}
+
+	public double getDriveRatePerSecond() {
+		return driveRatePerSecond;
+	}
+
+	/**
+	 * @param driveRatePerSecond the maximum Drive calls per second of a user, 0 or
+	 *                           less to disable throttling
+	 */
+	public void setDriveRatePerSecond(double driveRatePerSecond) {
+		this.driveRatePerSecond = driveRatePerSecond;
+	}
+
+	public double getSheetsRatePerSecond() {
+		return sheetsRatePerSecond;
+	}
+
+	/**
+	 * @param sheetsRatePerSecond the maximum Sheets calls per second of a user, 0
+	 *                            or less to disable throttling
+	 */
+	public void setSheetsRatePerSecond(double sheetsRatePerSecond) {
+		this.sheetsRatePerSecond = sheetsRatePerSecond;
+	}
+
+	public long getMediaSendThreshold() {
+		return mediaSendThreshold;
+	}
+
+	/**
+	 * @param mediaSendThreshold estimated size in bytes from which a mail is sent
+	 *                           as a message/rfc822 media upload instead of a
+	 *                           base64url encoded raw message, -1 to never use
+	 *                           the media upload. Mails with a template body are
+	 *                           always uploaded unless -1.
+	 */
+	public void setMediaSendThreshold(long mediaSendThreshold) {
+		this.mediaSendThreshold = mediaSendThreshold;
+	}
 }
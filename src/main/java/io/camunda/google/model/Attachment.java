@@ -1,11 +1,32 @@
 package io.camunda.google.model;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
 public class Attachment {
 
+	/**
+	 * Fetch the content of an attachment when it is first accessed.
+	 */
+	public interface Loader {
+		/**
+		 * @return a stream over the decoded content, closed by the attachment
+		 */
+		InputStream open() throws IOException;
+	}
+
 	private String name;
 	private String contentType;
 	private byte[] data;
 	private long size;
+	private Loader loader;
+	private long spillThreshold = -1;
+	private File file;
 
 	public String getName() {
 		return name;
@@ -23,14 +44,117 @@ public class Attachment {
 		this.contentType = contentType;
 	}
 
-	public byte[] getData() {
+	/**
+	 * @return the content, fetched on first access for a lazy attachment
+	 */
+	public synchronized byte[] getData() {
+		try {
+			load();
+			if (file != null) {
+				return Files.readAllBytes(file.toPath());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 		return data;
 	}
 
-	public void setData(byte[] data) {
+	public synchronized void setData(byte[] data) {
+		deleteFile();
 		this.data = data;
+		this.loader = null;
+	}
+
+	/**
+	 * @return a new stream over the content, fetched on first access for a lazy
+	 *         attachment
+	 */
+	public synchronized InputStream getInputStream() throws IOException {
+		load();
+		if (file != null) {
+			return Files.newInputStream(file.toPath());
+		}
+		return new ByteArrayInputStream(data == null ? new byte[0] : data);
+	}
+
+	/**
+	 * Fetch the content now if it was not fetched yet. Above the spill threshold,
+	 * the content is streamed to a temporary file instead of being kept in
+	 * memory, the file being deleted by {@link #discard()}.
+	 */
+	public synchronized void load() throws IOException {
+		if (loader == null) {
+			return;
+		}
+		try (InputStream in = loader.open()) {
+			if (spillThreshold < 0) {
+				data = in.readAllBytes();
+			} else if (size > spillThreshold) {
+				file = spill(new byte[0], in);
+			} else {
+				byte[] head = in.readNBytes((int) Math.min(spillThreshold + 1, Integer.MAX_VALUE));
+				if (head.length > spillThreshold) {
+					file = spill(head, in);
+				} else {
+					data = head;
+				}
+			}
+		}
+		loader = null;
+	}
+
+	private static File spill(byte[] head, InputStream rest) throws IOException {
+		File spilled = File.createTempFile("attachment", null);
+		try (OutputStream out = Files.newOutputStream(spilled.toPath())) {
+			out.write(head);
+			rest.transferTo(out);
+		} catch (IOException e) {
+			Files.deleteIfExists(spilled.toPath());
+			throw e;
+		}
+		return spilled;
+	}
+
+	public synchronized boolean isLoaded() {
+		return loader == null;
+	}
+
+	/**
+	 * @param loader         fetches the content on first access
+	 * @param spillThreshold size in bytes above which the fetched content is kept
+	 *                       in a temporary file, -1 to always keep it in memory
+	 */
+	public synchronized void setLoader(Loader loader, long spillThreshold) {
+		deleteFile();
+		this.loader = loader;
+		this.spillThreshold = spillThreshold;
+		this.data = null;
+	}
+
+	/**
+	 * Delete the temporary file holding the content, if any. Call it once done
+	 * with an attachment larger than the spill threshold.
+	 */
+	public synchronized void discard() throws IOException {
+		if (file != null) {
+			Files.deleteIfExists(file.toPath());
+			file = null;
+		}
+		data = null;
+	}
+
+	private void deleteFile() {
+		try {
+			discard();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
+	/**
+	 * @return the decoded size in bytes, 0 if unknown, e.g. for a mail parsed
+	 *         from the raw format
+	 */
 	public long getSize() {
 		return size;
 	}
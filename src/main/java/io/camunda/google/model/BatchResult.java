@@ -0,0 +1,51 @@
+package io.camunda.google.model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outcome of a bulk operation, keyed by the id of each processed item. An item
+ * is either in the results (with a null value when the operation returns
+ * nothing) or in the failures.
+ *
+ * @param <T> the type of the result of each item
+ */
+public class BatchResult<T> {
+
+	private final Map<String, T> results = new LinkedHashMap<>();
+
+	private final Map<String, Exception> failures = new LinkedHashMap<>();
+
+	public synchronized void addResult(String id, T result) {
+		results.put(id, result);
+	}
+
+	public synchronized void addFailure(String id, Exception failure) {
+		failures.put(id, failure);
+	}
+
+	/**
+	 * @return true if the item is in the results or in the failures
+	 */
+	public synchronized boolean contains(String id) {
+		return results.containsKey(id) || failures.containsKey(id);
+	}
+
+	public synchronized Map<String, T> getResults() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(results));
+	}
+
+	public synchronized Set<String> getSucceeded() {
+		return Collections.unmodifiableSet(new LinkedHashMap<>(results).keySet());
+	}
+
+	public synchronized Map<String, Exception> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	public synchronized boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+}
@@ -1,6 +1,8 @@
 package io.camunda.google.model;
 
 import java.io.File;
+import java.util.Locale;
+import java.util.Map;
 
 public class Mail {
 	private String From;
@@ -17,6 +19,12 @@ public class Mail {
 
 	private File[] attachments;
 
+	private String bodyTemplate;
+
+	private Map<String, Object> bodyVariables;
+
+	private Locale bodyLocale;
+
 	public String getFrom() {
 		return From;
 	}
@@ -73,6 +81,28 @@ public class Mail {
 		this.attachments = attachments;
 	}
 
+	public String getBodyTemplate() {
+		return bodyTemplate;
+	}
+
+	public Map<String, Object> getBodyVariables() {
+		return bodyVariables;
+	}
+
+	public Locale getBodyLocale() {
+		return bodyLocale;
+	}
+
+	/**
+	 * Render the body from the template while the message is written, instead
+	 * of setting it as a String.
+	 */
+	public void setBodyTemplate(String bodyTemplate, Map<String, Object> bodyVariables, Locale bodyLocale) {
+		this.bodyTemplate = bodyTemplate;
+		this.bodyVariables = bodyVariables;
+		this.bodyLocale = bodyLocale;
+	}
+
 	public static class Builder {
 
 		private String[] to;
@@ -81,6 +111,9 @@ public class Mail {
 		private String subject;
 		private String body;
 		private File[] attachments;
+		private String bodyTemplate;
+		private Map<String, Object> bodyVariables;
+		private Locale bodyLocale;
 
 		public Builder to(String... to) {
 			this.to = simplify(to);
@@ -112,6 +145,13 @@ public class Mail {
 			return this;
 		}
 
+		public Builder bodyTemplate(String template, Map<String, Object> variables, Locale locale) {
+			this.bodyTemplate = template;
+			this.bodyVariables = variables;
+			this.bodyLocale = locale;
+			return this;
+		}
+
 		public Mail build() {
 			Mail mail = new Mail();
 			mail.to = to;
@@ -120,6 +160,9 @@ public class Mail {
 			mail.subject = subject;
 			mail.body = body;
 			mail.attachments = attachments;
+			mail.bodyTemplate = bodyTemplate;
+			mail.bodyVariables = bodyVariables;
+			mail.bodyLocale = bodyLocale;
 
 			return mail;
 		}
@@ -0,0 +1,55 @@
+package io.camunda.google.model;
+
+import java.math.BigInteger;
+
+/**
+ * Notification that a mailbox changed, as published by Gmail to the topic
+ * registered with users.watch.
+ */
+public class MailNotification {
+
+	private String emailAddress;
+
+	private BigInteger historyId;
+
+	private String ackId;
+
+	public MailNotification() {
+	}
+
+	public MailNotification(String emailAddress, BigInteger historyId) {
+		this.emailAddress = emailAddress;
+		this.historyId = historyId;
+	}
+
+	public String getEmailAddress() {
+		return emailAddress;
+	}
+
+	public void setEmailAddress(String emailAddress) {
+		this.emailAddress = emailAddress;
+	}
+
+	/**
+	 * @return the history id of the mailbox after the change
+	 */
+	public BigInteger getHistoryId() {
+		return historyId;
+	}
+
+	public void setHistoryId(BigInteger historyId) {
+		this.historyId = historyId;
+	}
+
+	/**
+	 * @return the id acknowledging the notification to its source, null if the
+	 *         source needs no acknowledgement
+	 */
+	public String getAckId() {
+		return ackId;
+	}
+
+	public void setAckId(String ackId) {
+		this.ackId = ackId;
+	}
+}
@@ -0,0 +1,83 @@
+package io.camunda.google.model;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.api.services.gmail.model.Message;
+
+/**
+ * The changes of a mailbox since the previous synchronization.
+ */
+public class MailboxChanges {
+
+	private BigInteger historyId;
+
+	private boolean fullSync;
+
+	private final List<Message> added = new ArrayList<>();
+
+	private final List<String> deleted = new ArrayList<>();
+
+	private final Map<String, List<String>> labelsAdded = new LinkedHashMap<>();
+
+	private final Map<String, List<String>> labelsRemoved = new LinkedHashMap<>();
+
+	/**
+	 * @return the history id to start the next synchronization from
+	 */
+	public BigInteger getHistoryId() {
+		return historyId;
+	}
+
+	public void setHistoryId(BigInteger historyId) {
+		this.historyId = historyId;
+	}
+
+	/**
+	 * @return true if the whole label was listed, either on the first
+	 *         synchronization or because the previous history id had expired. All
+	 *         its messages are then reported as added.
+	 */
+	public boolean isFullSync() {
+		return fullSync;
+	}
+
+	public void setFullSync(boolean fullSync) {
+		this.fullSync = fullSync;
+	}
+
+	/**
+	 * @return the new messages, with only their id and thread id set
+	 */
+	public List<Message> getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return the ids of the deleted messages
+	 */
+	public List<String> getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * @return the labels added to existing messages, keyed by message id
+	 */
+	public Map<String, List<String>> getLabelsAdded() {
+		return labelsAdded;
+	}
+
+	/**
+	 * @return the labels removed from existing messages, keyed by message id
+	 */
+	public Map<String, List<String>> getLabelsRemoved() {
+		return labelsRemoved;
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && deleted.isEmpty() && labelsAdded.isEmpty() && labelsRemoved.isEmpty();
+	}
+}
@@ -0,0 +1,91 @@
+package io.camunda.google.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * What to fetch when reading a Gmail message. The default, full format returns
+ * the headers and the decoded body parts. The metadata format only returns the
+ * headers, restricted to the given ones if any, minimal only the ids and
+ * labels, and raw the whole RFC 822 message. A partial response field mask can
+ * further reduce the size of the response.
+ */
+public class ReadOptions {
+
+	public enum Format {
+		FULL, METADATA, MINIMAL, RAW;
+
+		public String value() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private Format format = Format.FULL;
+
+	private List<String> metadataHeaders;
+
+	private String fields;
+
+	public static ReadOptions full() {
+		return new ReadOptions();
+	}
+
+	/**
+	 * @param headers the headers to return, e.g. "From", "Subject", all if none
+	 */
+	public static ReadOptions metadata(String... headers) {
+		ReadOptions options = new ReadOptions();
+		options.setFormat(Format.METADATA);
+		if (headers.length > 0) {
+			options.setMetadataHeaders(Arrays.asList(headers));
+		}
+		return options;
+	}
+
+	public static ReadOptions minimal() {
+		ReadOptions options = new ReadOptions();
+		options.setFormat(Format.MINIMAL);
+		return options;
+	}
+
+	public static ReadOptions raw() {
+		ReadOptions options = new ReadOptions();
+		options.setFormat(Format.RAW);
+		return options;
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public void setFormat(Format format) {
+		this.format = format;
+	}
+
+	public List<String> getMetadataHeaders() {
+		return metadataHeaders;
+	}
+
+	public void setMetadataHeaders(List<String> metadataHeaders) {
+		this.metadataHeaders = metadataHeaders;
+	}
+
+	public String getFields() {
+		return fields;
+	}
+
+	public void setFields(String fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * @param fields the partial response field mask, e.g.
+	 *               "id,labelIds,payload/headers"
+	 * @return these options
+	 */
+	public ReadOptions withFields(String fields) {
+		setFields(fields);
+		return this;
+	}
+}
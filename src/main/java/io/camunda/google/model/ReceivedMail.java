@@ -1,9 +1,20 @@
 package io.camunda.google.model;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ReceivedMail {
+	private String id;
+
+	private String threadId;
+
+	private List<String> labelIds;
+
+	private Map<String, List<String>> headers = new LinkedHashMap<>();
+
 	private String From;
 
 	private String[] to;
@@ -18,6 +29,58 @@ public class ReceivedMail {
 
 	private List<Attachment> attachments;
 
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getThreadId() {
+		return threadId;
+	}
+
+	public void setThreadId(String threadId) {
+		this.threadId = threadId;
+	}
+
+	public List<String> getLabelIds() {
+		return labelIds;
+	}
+
+	public void setLabelIds(List<String> labelIds) {
+		this.labelIds = labelIds;
+	}
+
+	/**
+	 * @return all the values of each header, keyed by header name
+	 */
+	public Map<String, List<String>> getHeaders() {
+		return headers;
+	}
+
+	public void setHeaders(Map<String, List<String>> headers) {
+		this.headers = headers;
+	}
+
+	/**
+	 * @param name the name of the header, case insensitive
+	 * @return the first value of the header, or null if absent
+	 */
+	public String getHeader(String name) {
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			if (header.getKey().equalsIgnoreCase(name) && !header.getValue().isEmpty()) {
+				return header.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	public void addHeader(String name, String value) {
+		headers.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+	}
+
 	public String getFrom() {
 		return From;
 	}
@@ -0,0 +1,41 @@
+package io.camunda.google.util;
+
+/**
+ * Rate limiter adapting to the quota actually granted by the server: the rate
+ * is halved each time a request is rejected for exceeding the quota, then
+ * increased again by a twentieth of the configured rate per successful
+ * request, up to the configured rate.
+ */
+public class AdaptiveRateLimiter extends RateLimiter {
+
+	private static final double MIN_RATE_RATIO = 1d / 16;
+
+	private static final double RECOVERY_RATIO = 1d / 20;
+
+	private final double maxPermitsPerSecond;
+
+	/**
+	 * @param permitsPerSecond the configured rate, 0 or less to disable limiting
+	 */
+	public AdaptiveRateLimiter(double permitsPerSecond) {
+		super(permitsPerSecond);
+		this.maxPermitsPerSecond = permitsPerSecond;
+	}
+
+	public synchronized void onThrottled() {
+		if (maxPermitsPerSecond > 0) {
+			setPermitsPerSecond(Math.max(maxPermitsPerSecond * MIN_RATE_RATIO, getPermitsPerSecond() / 2));
+		}
+	}
+
+	public synchronized void onSuccess() {
+		if (maxPermitsPerSecond > 0 && getPermitsPerSecond() < maxPermitsPerSecond) {
+			setPermitsPerSecond(
+			        Math.min(maxPermitsPerSecond, getPermitsPerSecond() + maxPermitsPerSecond * RECOVERY_RATIO));
+		}
+	}
+
+	public double getMaxPermitsPerSecond() {
+		return maxPermitsPerSecond;
+	}
+}
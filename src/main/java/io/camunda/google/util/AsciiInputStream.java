@@ -0,0 +1,67 @@
+package io.camunda.google.util;
+
+import java.io.InputStream;
+
+/**
+ * Stream over the characters of an ASCII string, e.g. a base64 encoded
+ * content, without copying it to a byte array.
+ */
+public class AsciiInputStream extends InputStream {
+
+	private final String value;
+
+	private int position;
+
+	private int mark;
+
+	public AsciiInputStream(String value) {
+		this.value = value;
+	}
+
+	@Override
+	public int read() {
+		return position < value.length() ? value.charAt(position++) & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= value.length()) {
+			return -1;
+		}
+		int count = Math.min(len, value.length() - position);
+		for (int i = 0; i < count; i++) {
+			b[off + i] = (byte) value.charAt(position++);
+		}
+		return count;
+	}
+
+	@Override
+	public long skip(long n) {
+		long skipped = Math.max(0, Math.min(n, value.length() - position));
+		position += (int) skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return value.length() - position;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+		mark = position;
+	}
+
+	@Override
+	public synchronized void reset() {
+		position = mark;
+	}
+}
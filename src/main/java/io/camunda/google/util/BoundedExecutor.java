@@ -0,0 +1,90 @@
+package io.camunda.google.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running at most a given number of tasks at the same time. When the
+ * JVM supports virtual threads (Java 21+) and they are preferred, every task
+ * gets its own virtual thread and a semaphore bounds the concurrency. Otherwise
+ * a pool of daemon platform threads is used, the threads stopping when idle.
+ */
+public class BoundedExecutor implements Executor {
+
+	private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorFactory();
+
+	private final ExecutorService delegate;
+
+	private final Semaphore permits;
+
+	public BoundedExecutor(String name, int maxConcurrency, boolean preferVirtualThreads) {
+		if (maxConcurrency < 1) {
+			throw new IllegalArgumentException("maxConcurrency must be at least 1");
+		}
+		ExecutorService virtualThreadExecutor = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+		if (virtualThreadExecutor != null) {
+			this.delegate = virtualThreadExecutor;
+			this.permits = new Semaphore(maxConcurrency);
+		} else {
+			AtomicInteger threadCount = new AtomicInteger();
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+			        new LinkedBlockingQueue<>(), runnable -> {
+				        Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+				        thread.setDaemon(true);
+				        return thread;
+			        });
+			pool.allowCoreThreadTimeOut(true);
+			this.delegate = pool;
+			this.permits = null;
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (permits == null) {
+			delegate.execute(task);
+			return;
+		}
+		delegate.execute(() -> {
+			permits.acquireUninterruptibly();
+			try {
+				task.run();
+			} finally {
+				permits.release();
+			}
+		});
+	}
+
+	public boolean isVirtual() {
+		return permits != null;
+	}
+
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		if (NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static Method findVirtualThreadExecutorFactory() {
+		try {
+			return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package io.camunda.google.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe cache keeping at most a given number of entries, the least
+ * recently used being evicted first, each entry expiring after a time to live.
+ * Hits, misses and evictions are counted, and a listener can be notified of
+ * the entries evicted or expired.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ExpiringCache<K, V> {
+
+	private static class Timed<V> {
+		private final V value;
+		private final long expiresAtNanos;
+
+		Timed(V value, long expiresAtNanos) {
+			this.value = value;
+			this.expiresAtNanos = expiresAtNanos;
+		}
+	}
+
+	private final int maxSize;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<K, Timed<V>> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final BiConsumer<K, V> evictionListener;
+
+	/**
+	 * @param maxSize   the maximum number of entries
+	 * @param ttlMillis the time to live of an entry, 0 or less to never expire
+	 */
+	public ExpiringCache(int maxSize, long ttlMillis) {
+		this(maxSize, ttlMillis, null);
+	}
+
+	/**
+	 * @param maxSize          the maximum number of entries
+	 * @param ttlMillis        the time to live of an entry, 0 or less to never
+	 *                         expire
+	 * @param evictionListener notified of the entries evicted or expired, may be
+	 *                         null
+	 */
+	public ExpiringCache(int maxSize, long ttlMillis, BiConsumer<K, V> evictionListener) {
+		this.maxSize = maxSize;
+		this.evictionListener = evictionListener;
+		this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : Long.MAX_VALUE;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Timed<V>> eldest) {
+				if (size() > ExpiringCache.this.maxSize) {
+					evictions.incrementAndGet();
+					notifyEviction(eldest.getKey(), eldest.getValue().value);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached value, or null if absent or expired
+	 */
+	public synchronized V get(K key) {
+		Timed<V> entry = entries.get(key);
+		if (entry != null && entry.expiresAtNanos - System.nanoTime() <= 0) {
+			entries.remove(key);
+			notifyEviction(key, entry.value);
+			entry = null;
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.value;
+	}
+
+	public synchronized void put(K key, V value) {
+		long now = System.nanoTime();
+		long expiresAt = ttlNanos == Long.MAX_VALUE ? now + Long.MAX_VALUE / 2 : now + ttlNanos;
+		entries.put(key, new Timed<>(value, expiresAt));
+	}
+
+	/**
+	 * Get the cached value, or atomically cache the one built by the given
+	 * function. The function is called while holding the lock of the cache, so
+	 * it should be cheap (e.g. return a {@link LazyHolder}).
+	 */
+	public synchronized V computeIfAbsent(K key, Function<K, V> mappingFunction) {
+		V value = get(key);
+		if (value == null) {
+			value = mappingFunction.apply(key);
+			put(key, value);
+		}
+		return value;
+	}
+
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized void invalidateIf(Predicate<K> predicate) {
+		for (Iterator<K> keys = entries.keySet().iterator(); keys.hasNext();) {
+			if (predicate.test(keys.next())) {
+				keys.remove();
+			}
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	private void notifyEviction(K key, V value) {
+		if (evictionListener != null) {
+			evictionListener.accept(key, value);
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
@@ -0,0 +1,53 @@
+package io.camunda.google.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe holder of a value built on first access. The supplier is called
+ * exactly once, even when several threads ask for the value concurrently, and
+ * the built value is safely published to all of them. Calling {@link #reset()}
+ * makes the next access build the value again.
+ *
+ * @param <T> the type of the held value
+ */
+public class LazyHolder<T> {
+
+	private final Supplier<T> supplier;
+
+	private volatile T value;
+
+	public LazyHolder(Supplier<T> supplier) {
+		this.supplier = supplier;
+	}
+
+	public T get() {
+		T result = value;
+		if (result == null) {
+			synchronized (this) {
+				result = value;
+				if (result == null) {
+					result = supplier.get();
+					value = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replace the held value.
+	 *
+	 * @param value the new value, or null to build it again on next access.
+	 */
+	public synchronized void set(T value) {
+		this.value = value;
+	}
+
+	public synchronized void reset() {
+		this.value = null;
+	}
+
+	public boolean isInitialized() {
+		return value != null;
+	}
+}
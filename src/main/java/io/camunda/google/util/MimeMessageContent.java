@@ -0,0 +1,59 @@
+package io.camunda.google.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+
+/**
+ * HTTP content writing a MIME message as message/rfc822 straight to the
+ * request body, without encoding nor buffering it.
+ */
+public class MimeMessageContent extends AbstractInputStreamContent {
+
+	public static final String TYPE = "message/rfc822";
+
+	private final MimeMessage mimeMessage;
+
+	public MimeMessageContent(MimeMessage mimeMessage) {
+		super(TYPE);
+		this.mimeMessage = mimeMessage;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		try {
+			mimeMessage.writeTo(out);
+		} catch (MessagingException e) {
+			throw new IOException(e);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Only used by the resumable uploads, which read the content by chunks: the
+	 * message is then written in memory.
+	 */
+	@Override
+	public InputStream getInputStream() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		writeTo(buffer);
+		return new ByteArrayInputStream(buffer.toByteArray());
+	}
+
+	@Override
+	public long getLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean retrySupported() {
+		return true;
+	}
+}
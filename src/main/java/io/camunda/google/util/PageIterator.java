@@ -0,0 +1,122 @@
+package io.camunda.google.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the items of a paginated Google API list call. Pages are
+ * fetched on demand and, while the items of a page are consumed, the next page
+ * is already fetched in the background. At most two pages are held in memory.
+ *
+ * @param <P> the type of the page (the list response)
+ * @param <T> the type of the items
+ */
+public class PageIterator<P, T> implements Iterator<T> {
+
+	/**
+	 * Fetch one page of results.
+	 *
+	 * @param <P> the type of the page
+	 */
+	public interface PageFetcher<P> {
+		/**
+		 * @param pageToken the token of the page to fetch, null for the first one
+		 */
+		P fetch(String pageToken) throws IOException;
+	}
+
+	private final PageFetcher<P> fetcher;
+
+	private final Function<P, List<T>> items;
+
+	private final Function<P, String> nextPageToken;
+
+	private final Executor executor;
+
+	private Iterator<T> current = Collections.emptyIterator();
+
+	private CompletableFuture<P> next;
+
+	public PageIterator(PageFetcher<P> fetcher, Function<P, List<T>> items, Function<P, String> nextPageToken,
+	        Executor executor) {
+		this.fetcher = fetcher;
+		this.items = items;
+		this.nextPageToken = nextPageToken;
+		this.executor = executor;
+		this.next = fetch(null);
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!current.hasNext()) {
+			if (next == null) {
+				return false;
+			}
+			P page = join(next);
+			String token = nextPageToken.apply(page);
+			next = token == null || token.isEmpty() ? null : fetch(token);
+			List<T> pageItems = items.apply(page);
+			current = pageItems == null ? Collections.emptyIterator() : pageItems.iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	/**
+	 * Stop fetching pages, e.g. when the stream is closed before being fully
+	 * consumed.
+	 */
+	public void close() {
+		if (next != null) {
+			next.cancel(false);
+			next = null;
+		}
+		current = Collections.emptyIterator();
+	}
+
+	public Stream<T> stream() {
+		return StreamSupport
+		        .stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+		        .onClose(this::close);
+	}
+
+	private CompletableFuture<P> fetch(String pageToken) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return fetcher.fetch(pageToken);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	private static <P> P join(CompletableFuture<P> page) {
+		try {
+			return page.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
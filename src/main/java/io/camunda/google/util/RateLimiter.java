@@ -0,0 +1,88 @@
+package io.camunda.google.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Permits are refilled continuously at the
+ * configured rate, up to a maximum burst. Callers asking for more permits than
+ * available reserve them in advance and wait until they are refilled, so
+ * concurrent callers are served in order without exceeding the rate.
+ */
+public class RateLimiter {
+
+	private double permitsPerSecond;
+
+	private final double maxPermits;
+
+	private double storedPermits;
+
+	private long lastRefillNanos;
+
+	/**
+	 * @param permitsPerSecond the sustained rate, 0 or less to disable limiting
+	 */
+	public RateLimiter(double permitsPerSecond) {
+		this(permitsPerSecond, Math.max(1, permitsPerSecond));
+	}
+
+	/**
+	 * @param permitsPerSecond the sustained rate, 0 or less to disable limiting
+	 * @param maxPermits       the maximum burst
+	 */
+	public RateLimiter(double permitsPerSecond, double maxPermits) {
+		this.permitsPerSecond = permitsPerSecond;
+		this.maxPermits = maxPermits;
+		this.storedPermits = maxPermits;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	public long acquire() throws InterruptedException {
+		return acquire(1);
+	}
+
+	/**
+	 * @return the time waited for the permits, in nanoseconds
+	 */
+	public long acquire(int permits) throws InterruptedException {
+		long waitNanos = reserve(permits);
+		if (waitNanos > 0) {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+		return waitNanos;
+	}
+
+	private synchronized long reserve(int permits) {
+		if (permitsPerSecond <= 0) {
+			return 0;
+		}
+		refill();
+		storedPermits -= permits;
+		if (storedPermits >= 0) {
+			return 0;
+		}
+		return (long) (-storedPermits / permitsPerSecond * TimeUnit.SECONDS.toNanos(1));
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double refilled = (now - lastRefillNanos) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		storedPermits = Math.min(maxPermits, storedPermits + refilled);
+		lastRefillNanos = now;
+	}
+
+	public synchronized double getPermitsPerSecond() {
+		return permitsPerSecond;
+	}
+
+	/**
+	 * Change the rate, the permits already refilled being kept.
+	 */
+	public synchronized void setPermitsPerSecond(double permitsPerSecond) {
+		if (this.permitsPerSecond > 0) {
+			refill();
+		} else {
+			lastRefillNanos = System.nanoTime();
+		}
+		this.permitsPerSecond = permitsPerSecond;
+	}
+}
@@ -0,0 +1,292 @@
+package io.camunda.google.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpBackOffIOExceptionHandler;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpUnsuccessfulResponseHandler;
+import com.google.api.client.http.MultipartContent;
+import com.google.api.client.util.BackOff;
+import com.google.api.client.util.ExponentialBackOff;
+import com.google.api.client.util.Sleeper;
+
+/**
+ * Request initializer throttling the calls of a user and retrying failed calls
+ * with a jittered exponential back-off.
+ * <p>
+ * Each API (gmail, drive, sheets...) has its own token bucket, each call of a
+ * batch taking one token. When the server rejects a call for exceeding the
+ * quota (429, or 403 rateLimitExceeded), the rate of the API is lowered and
+ * the call is retried after the delay given by the Retry-After header, if any.
+ * <p>
+ * Quota errors are retried for all requests, the server having rejected them
+ * before processing them, after the handler installed by the delegate (e.g.
+ * the credential refreshing an expired token) had a chance to handle them.
+ * Server and I/O errors are only retried for idempotent methods, since the
+ * server may have processed the request: a mail is never sent twice. These
+ * handlers also let resumable uploads resume from the last byte acknowledged by
+ * the server.
+ */
+public class RetryInitializer implements HttpRequestInitializer {
+
+	private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "PUT", "DELETE");
+
+	private static final Set<String> RATE_LIMIT_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded");
+
+	private static final int MAX_ERROR_PEEK_BYTES = 4096;
+
+	private static final String UNLIMITED = "";
+
+	private final HttpRequestInitializer delegate;
+
+	private final int maxElapsedTimeMillis;
+
+	private final Map<String, AdaptiveRateLimiter> rateLimiters = new HashMap<>();
+
+	private final AtomicLong throttledCount = new AtomicLong();
+
+	private final AtomicLong retriedCount = new AtomicLong();
+
+	private final AtomicLong delayedCount = new AtomicLong();
+
+	private Sleeper sleeper = Sleeper.DEFAULT;
+
+	public RetryInitializer(HttpRequestInitializer delegate, int maxElapsedTimeMillis) {
+		this(delegate, maxElapsedTimeMillis, Map.of());
+	}
+
+	/**
+	 * @param delegate             the initializer of the credential, may be null
+	 * @param maxElapsedTimeMillis the maximum time spent retrying a request
+	 * @param ratesPerSecond       the rate of each API, keyed by its name (e.g.
+	 *                             "gmail"). The other APIs are not throttled.
+	 */
+	public RetryInitializer(HttpRequestInitializer delegate, int maxElapsedTimeMillis,
+	        Map<String, Double> ratesPerSecond) {
+		this.delegate = delegate;
+		this.maxElapsedTimeMillis = maxElapsedTimeMillis;
+		ratesPerSecond.forEach((api, rate) -> rateLimiters.put(api, new AdaptiveRateLimiter(rate)));
+		rateLimiters.put(UNLIMITED, new AdaptiveRateLimiter(0));
+	}
+
+	@Override
+	public void initialize(HttpRequest request) throws IOException {
+		if (delegate != null) {
+			delegate.initialize(request);
+		}
+		AdaptiveRateLimiter rateLimiter = rateLimiterOf(api(request.getUrl()));
+
+		HttpExecuteInterceptor previousInterceptor = request.getInterceptor();
+		request.setInterceptor(req -> {
+			if (previousInterceptor != null) {
+				previousInterceptor.intercept(req);
+			}
+			try {
+				if (rateLimiter.acquire(permits(req)) > 0) {
+					delayedCount.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+		});
+
+		HttpResponseInterceptor previousResponseInterceptor = request.getResponseInterceptor();
+		request.setResponseInterceptor(response -> {
+			if (previousResponseInterceptor != null) {
+				previousResponseInterceptor.interceptResponse(response);
+			}
+			if (response.isSuccessStatusCode()) {
+				rateLimiter.onSuccess();
+			}
+		});
+
+		HttpUnsuccessfulResponseHandler previous = request.getUnsuccessfulResponseHandler();
+		BackOff backOff = newBackOff();
+		request.setUnsuccessfulResponseHandler((req, response, supportsRetry) -> {
+			if (previous != null && previous.handleResponse(req, response, supportsRetry)) {
+				return true;
+			}
+			boolean throttled = isThrottled(response);
+			if (throttled) {
+				throttledCount.incrementAndGet();
+				rateLimiter.onThrottled();
+			}
+			boolean serverError = response.getStatusCode() / 100 == 5
+			        && IDEMPOTENT_METHODS.contains(req.getRequestMethod());
+			if (!supportsRetry || !(throttled || serverError)) {
+				return false;
+			}
+			long delayMillis = retryAfterMillis(response);
+			if (delayMillis < 0) {
+				delayMillis = backOff.nextBackOffMillis();
+			}
+			if (delayMillis == BackOff.STOP || delayMillis > maxElapsedTimeMillis) {
+				return false;
+			}
+			try {
+				sleeper.sleep(delayMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			retriedCount.incrementAndGet();
+			return true;
+		});
+
+		HttpBackOffIOExceptionHandler ioExceptionHandler = new HttpBackOffIOExceptionHandler(newBackOff())
+		        .setSleeper(sleeper);
+		request.setIOExceptionHandler((req, supportsRetry) -> {
+			if (IDEMPOTENT_METHODS.contains(req.getRequestMethod())
+			        && ioExceptionHandler.handleIOException(req, supportsRetry)) {
+				retriedCount.incrementAndGet();
+				return true;
+			}
+			return false;
+		});
+	}
+
+	private ExponentialBackOff newBackOff() {
+		return new ExponentialBackOff.Builder().setMaxElapsedTimeMillis(maxElapsedTimeMillis).build();
+	}
+
+	/**
+	 * @return the name of the API called, e.g. "gmail" for
+	 *         https://www.googleapis.com/gmail/v1/... or
+	 *         https://www.googleapis.com/batch/gmail/v1 and "sheets" for
+	 *         https://sheets.googleapis.com/v4/...
+	 */
+	static String api(GenericUrl url) {
+		String host = url.getHost();
+		if (host != null && host.endsWith(".googleapis.com") && !host.startsWith("www.")) {
+			return host.substring(0, host.indexOf('.'));
+		}
+		List<String> segments = url.getPathParts();
+		if (segments != null) {
+			for (String segment : segments) {
+				if (!segment.isEmpty() && !segment.equals("upload") && !segment.equals("batch")) {
+					return segment;
+				}
+			}
+		}
+		return UNLIMITED;
+	}
+
+	private AdaptiveRateLimiter rateLimiterOf(String api) {
+		AdaptiveRateLimiter rateLimiter = rateLimiters.get(api);
+		return rateLimiter != null ? rateLimiter : rateLimiters.get(UNLIMITED);
+	}
+
+	/**
+	 * @return the number of calls of the request, more than one for a batch
+	 */
+	private static int permits(HttpRequest request) {
+		List<String> segments = request.getUrl().getPathParts();
+		if (segments != null && segments.contains("batch") && request.getContent() instanceof MultipartContent) {
+			return Math.max(1, ((MultipartContent) request.getContent()).getParts().size());
+		}
+		return 1;
+	}
+
+	/**
+	 * Tell whether the server rejected the request for exceeding the quota. The
+	 * reason of a 403 is read from the error, which stays available to the
+	 * caller.
+	 */
+	private static boolean isThrottled(HttpResponse response) throws IOException {
+		if (response.getStatusCode() == 429) {
+			return true;
+		}
+		if (response.getStatusCode() != 403) {
+			return false;
+		}
+		InputStream content = response.getContent();
+		if (content == null || !content.markSupported()) {
+			return false;
+		}
+		content.mark(MAX_ERROR_PEEK_BYTES);
+		String error = new String(content.readNBytes(MAX_ERROR_PEEK_BYTES), StandardCharsets.UTF_8);
+		content.reset();
+		return RATE_LIMIT_REASONS.stream().anyMatch(reason -> error.contains("\"" + reason + "\""));
+	}
+
+	/**
+	 * @return the delay given by the Retry-After header, in seconds or as an
+	 *         HTTP date, or -1 if there is none
+	 */
+	private static long retryAfterMillis(HttpResponse response) {
+		String retryAfter = response.getHeaders().getFirstHeaderStringValue("Retry-After");
+		if (retryAfter == null) {
+			return -1;
+		}
+		try {
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			try {
+				ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+				return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+			} catch (DateTimeParseException invalid) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * @return the initializer of the credential, or null
+	 */
+	public HttpRequestInitializer getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return the number of calls rejected by the server for exceeding the quota
+	 */
+	public long getThrottledCount() {
+		return throttledCount.get();
+	}
+
+	/**
+	 * @return the number of retries, after a server, quota or I/O error
+	 */
+	public long getRetriedCount() {
+		return retriedCount.get();
+	}
+
+	/**
+	 * @return the number of requests delayed by the rate limiters
+	 */
+	public long getDelayedCount() {
+		return delayedCount.get();
+	}
+
+	/**
+	 * @return the rate limiter of an API, or null if the API is not throttled
+	 */
+	public AdaptiveRateLimiter getRateLimiter(String api) {
+		return api.equals(UNLIMITED) ? null : rateLimiters.get(api);
+	}
+
+	/**
+	 * Replace the sleeper waiting between retries, e.g. in tests.
+	 */
+	public RetryInitializer setSleeper(Sleeper sleeper) {
+		this.sleeper = sleeper;
+		return this;
+	}
+}
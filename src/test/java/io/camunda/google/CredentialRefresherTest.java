@@ -0,0 +1,91 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+public class CredentialRefresherTest {
+
+    @Test
+    public void refreshBeforeExpiry() throws Exception {
+        MockHttpTransport tokenServer = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"access_token\":\"fresh\",\"expires_in\":3600}");
+                    }
+                };
+            }
+        };
+        Credential credential = new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+                .setTransport(tokenServer).setJsonFactory(GoogleAuthUtils.JSON_FACTORY)
+                .setTokenServerUrl(new GenericUrl("https://oauth2.googleapis.com/token"))
+                .setClientAuthentication(new ClientParametersAuthentication("id", "secret")).build();
+        credential.setAccessToken("stale").setRefreshToken("refresh").setExpiresInSeconds(1L);
+
+        CredentialRefresher refresher = new CredentialRefresher(300);
+        try {
+            refresher.register(credential);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (refresher.getRefreshCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            refresher.shutdown();
+        }
+
+        Assertions.assertEquals(1, refresher.getRefreshCount());
+        Assertions.assertEquals(0, refresher.getFailureCount());
+        Assertions.assertEquals("fresh", credential.getAccessToken());
+    }
+
+    @Test
+    public void rejectedCredentialsAreUnregistered() throws Exception {
+        MockHttpTransport tokenServer = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        return new MockLowLevelHttpResponse().setStatusCode(400).setContentType("application/json")
+                                .setContent("{\"error\":\"invalid_grant\"}");
+                    }
+                };
+            }
+        };
+        Credential credential = new Credential.Builder(BearerToken.authorizationHeaderAccessMethod())
+                .setTransport(tokenServer).setJsonFactory(GoogleAuthUtils.JSON_FACTORY)
+                .setTokenServerUrl(new GenericUrl("https://oauth2.googleapis.com/token"))
+                .setClientAuthentication(new ClientParametersAuthentication("id", "secret")).build();
+        credential.setAccessToken("stale").setRefreshToken("revoked").setExpiresInSeconds(1L);
+
+        CredentialRefresher refresher = new CredentialRefresher(300);
+        try {
+            refresher.register(credential);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (refresher.getFailureCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            Assertions.assertEquals(1, refresher.getFailureCount());
+            Assertions.assertFalse(refresher.isRegistered(credential), "a revoked credential should not be retried");
+        } finally {
+            refresher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package io.camunda.google;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.BatchResult;
+
+public class DriveUtilsTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+
+    private static final String FOLDERS = "{\"files\":["
+            + "{\"id\":\"a1\",\"name\":\"a\",\"parents\":[\"root\"]},"
+            + "{\"id\":\"b1\",\"name\":\"b\",\"parents\":[\"other\"]},"
+            + "{\"id\":\"b2\",\"name\":\"b\",\"parents\":[\"a1\"]},"
+            + "{\"id\":\"c1\",\"name\":\"c\",\"parents\":[\"b2\"]}]}";
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private final AtomicInteger postCount = new AtomicInteger();
+
+    private int failingRequest = -1;
+
+    @BeforeEach
+    public void mockDrive() {
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setDownloadChunkSize(8);
+        GoogleAuthUtils.configure(config);
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                int request = requestCount.incrementAndGet();
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        if (request == failingRequest) {
+                            throw new IOException("connection reset");
+                        }
+                        if (method.equals("POST")) {
+                            postCount.incrementAndGet();
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent("{\"id\":\"drive-" + request + "\"}");
+                        }
+                        if (getUrl().contains("/files?") && getUrl().contains("pageSize=1")) {
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent("{\"files\":[]}");
+                        }
+                        if (getUrl().contains("/files?")) {
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent(FOLDERS);
+                        }
+                        return rangeResponse(getFirstHeaderValue("Range"));
+                    }
+                };
+            }
+        };
+        GoogleClients.setDefault(new GoogleClients(transport, null, "test"));
+        DriveUtils.getFolderCache().invalidateAll();
+    }
+
+    @AfterEach
+    public void resetDrive() {
+        DriveUtils.getFolderCache().invalidateAll();
+        GoogleAuthUtils.configure(new GoogleWsConfig());
+    }
+
+    @Test
+    public void downloadInChunks() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long size = DriveUtils.getFromDrive("fileId", out);
+
+        Assertions.assertEquals(CONTENT.length, size);
+        Assertions.assertArrayEquals(CONTENT, out.toByteArray());
+        Assertions.assertEquals(3, requestCount.get(), "20 bytes should take 3 chunks of 8");
+    }
+
+    @Test
+    public void downloadResumesAfterFailure() throws IOException {
+        failingRequest = 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        DriveUtils.getFromDrive("fileId", out);
+
+        Assertions.assertArrayEquals(CONTENT, out.toByteArray());
+        Assertions.assertEquals(4, requestCount.get(), "the failed chunk should be requested again");
+    }
+
+    @Test
+    public void storeAllReportsEachFile(@TempDir Path dir) throws IOException {
+        Path first = Files.writeString(dir.resolve("first.txt"), "first");
+        Path second = Files.writeString(dir.resolve("second.txt"), "second");
+        Path missing = dir.resolve("missing.txt");
+
+        BatchResult<String> result = DriveUtils.storeAllInDrive(List.of(first, second, missing), "parentId");
+
+        Assertions.assertEquals(2, result.getResults().size());
+        Assertions.assertTrue(result.getResults().get(first.toString()).startsWith("drive-"));
+        Assertions.assertTrue(result.getResults().get(second.toString()).startsWith("drive-"));
+        Assertions.assertTrue(result.getFailures().containsKey(missing.toString()));
+    }
+
+    @Test
+    public void smallFilesAreUploadedInOneRequest(@TempDir Path dir) throws IOException {
+        List<String> requests = new ArrayList<>();
+        List<MediaHttpUploader.UploadState> states = new ArrayList<>();
+        DriveClient client = new GoogleClients(uploadTransport(requests), null, "test", new GoogleWsConfig(), "me")
+                .driveClient();
+
+        String id = client.storeInDrive(Files.writeString(dir.resolve("small.txt"), "small").toFile(), null,
+                uploader -> states.add(uploader.getUploadState()));
+
+        Assertions.assertEquals("direct", id);
+        Assertions.assertEquals(1, requests.size());
+        Assertions.assertTrue(requests.get(0).contains("uploadType=multipart"), requests.get(0));
+        Assertions.assertEquals(MediaHttpUploader.UploadState.MEDIA_COMPLETE, states.get(states.size() - 1));
+    }
+
+    @Test
+    public void largeFilesUseAResumableUpload(@TempDir Path dir) throws IOException {
+        List<String> requests = new ArrayList<>();
+        List<Long> progress = new ArrayList<>();
+        List<MediaHttpUploader.UploadState> states = new ArrayList<>();
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setDirectUploadThreshold(0);
+        config.setUploadChunkSize(MediaHttpUploader.MINIMUM_CHUNK_SIZE);
+        DriveClient client = new GoogleClients(uploadTransport(requests), null, "test", config, "me").driveClient();
+        Path large = Files.write(dir.resolve("large.bin"), new byte[MediaHttpUploader.MINIMUM_CHUNK_SIZE + 1000]);
+
+        String id = client.storeInDrive(large.toFile(), null, uploader -> {
+            states.add(uploader.getUploadState());
+            progress.add(uploader.getNumBytesUploaded());
+        });
+
+        Assertions.assertEquals("resumed", id);
+        Assertions.assertTrue(requests.get(0).contains("uploadType=resumable"), requests.get(0));
+        Assertions.assertEquals(3, requests.size(), "the initiation and 2 chunks should be sent");
+        Assertions.assertEquals(List.of(MediaHttpUploader.UploadState.INITIATION_STARTED,
+                MediaHttpUploader.UploadState.INITIATION_COMPLETE, MediaHttpUploader.UploadState.MEDIA_IN_PROGRESS,
+                MediaHttpUploader.UploadState.MEDIA_COMPLETE), states);
+        Assertions.assertEquals(Long.valueOf(MediaHttpUploader.MINIMUM_CHUNK_SIZE), progress.get(2));
+        Assertions.assertEquals(Long.valueOf(Files.size(large)), progress.get(3));
+    }
+
+    @Test
+    public void transfersFollowTheConcurrencyOfTheClient(@TempDir Path dir) throws IOException {
+        AtomicInteger uploading = new AtomicInteger();
+        AtomicInteger maxUploading = new AtomicInteger();
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        maxUploading.accumulateAndGet(uploading.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        } finally {
+                            uploading.decrementAndGet();
+                        }
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"id\":\"uploaded\"}");
+                    }
+                };
+            }
+        };
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setTransferConcurrency(1);
+        DriveClient client = new GoogleClients(transport, null, "test", config, "me").driveClient();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            files.add(Files.writeString(dir.resolve("file" + i + ".txt"), "file" + i));
+        }
+
+        BatchResult<String> result = client.storeAllInDrive(files, null);
+
+        Assertions.assertEquals(4, result.getResults().size());
+        Assertions.assertEquals(1, maxUploading.get(), "a single upload should run at a time");
+    }
+
+    @Test
+    public void folderPathResolvedInOneQueryAndCached() throws IOException {
+        Assertions.assertEquals("c1", DriveUtils.getFolderIdByPath("a/b/c"));
+        Assertions.assertEquals(1, requestCount.get(), "the path should be resolved in one query");
+
+        Assertions.assertEquals("b2", DriveUtils.getFolderIdByPath("a/b"));
+        Assertions.assertEquals("c1", DriveUtils.getFolderIdByPath("/a/b/c"));
+        Assertions.assertEquals(1, requestCount.get(), "the path and its prefixes should be cached");
+        Assertions.assertEquals(2, DriveUtils.getFolderCache().getHits());
+    }
+
+    @Test
+    public void pathsFoundAnywhereAreNotReusedUnderTheRoot() throws IOException {
+        Assertions.assertEquals("b1", DriveUtils.getFolderIdByPath("b"));
+
+        String id = DriveUtils.resolveOrCreateFolderPath("b");
+
+        Assertions.assertTrue(id.startsWith("drive-"), "b should be created under the root, not found elsewhere: " + id);
+    }
+
+    @Test
+    public void concurrentPathCreationsAreDeduplicated() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> ids = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                ids.add(executor.submit(() -> {
+                    start.await();
+                    return DriveUtils.resolveOrCreateFolderPath("clients/2026/invoices");
+                }));
+            }
+            start.countDown();
+            for (Future<String> id : ids) {
+                Assertions.assertEquals(ids.get(0).get(), id.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(3, postCount.get(), "each missing folder should be created once");
+    }
+
+    /**
+     * Drive upload endpoint: a direct upload gets its id, a resumable session is
+     * acknowledged chunk by chunk.
+     */
+    private static MockHttpTransport uploadTransport(List<String> requests) {
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                requests.add(url);
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        if (getUrl().contains("uploadType=resumable")) {
+                            return new MockLowLevelHttpResponse().addHeader("Location",
+                                    "https://www.googleapis.com/upload/drive/v3/files?upload_id=session");
+                        }
+                        if (getUrl().contains("upload_id=session")) {
+                            Matcher matcher = CONTENT_RANGE.matcher(getFirstHeaderValue("Content-Range"));
+                            Assertions.assertTrue(matcher.matches(), getFirstHeaderValue("Content-Range"));
+                            long last = Long.parseLong(matcher.group(2));
+                            if (last + 1 < Long.parseLong(matcher.group(3))) {
+                                return new MockLowLevelHttpResponse().setStatusCode(308).addHeader("Range",
+                                        "bytes=0-" + last);
+                            }
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent("{\"id\":\"resumed\"}");
+                        }
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"id\":\"direct\"}");
+                    }
+                };
+            }
+        };
+    }
+
+    private static MockLowLevelHttpResponse rangeResponse(String range) {
+        Matcher matcher = RANGE.matcher(range);
+        Assertions.assertTrue(matcher.matches(), range);
+        int first = Integer.parseInt(matcher.group(1));
+        int last = Math.min(CONTENT.length - 1, Integer.parseInt(matcher.group(2)));
+        return new MockLowLevelHttpResponse().setStatusCode(206)
+                .addHeader("Content-Range", "bytes " + first + "-" + last + "/" + CONTENT.length)
+                .setContent(Arrays.copyOfRange(CONTENT, first, last + 1));
+    }
+}
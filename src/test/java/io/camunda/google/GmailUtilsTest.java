@@ -0,0 +1,427 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.model.Message;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.Attachment;
+import io.camunda.google.model.BatchResult;
+import io.camunda.google.model.Mail;
+import io.camunda.google.model.ReadOptions;
+import io.camunda.google.model.ReceivedMail;
+
+public class GmailUtilsTest {
+
+    private static final String BOUNDARY = "batch_boundary";
+
+    private static final Pattern MESSAGE_URL = Pattern.compile("/messages/([^/\\s?]+)(/trash)?");
+
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private final List<String> urls = new ArrayList<>();
+
+    @BeforeEach
+    public void mockGmail() {
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                requestCount.incrementAndGet();
+                urls.add(url);
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        if (getUrl().contains("format=metadata")) {
+                            // the fields mask only keeps the headers of the payload
+                            String mimeType = getUrl().contains("payload/headers") ? ""
+                                    : "\"mimeType\":\"multipart/mixed\",";
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent("{\"id\":\"m1\",\"labelIds\":[\"INBOX\"],\"payload\":{"
+                                            + mimeType + "\"headers\":["
+                                            + "{\"name\":\"From\",\"value\":\"jane@example.com\"},"
+                                            + "{\"name\":\"X-Route\",\"value\":\"billing\"}]}}");
+                        }
+                        if (getUrl().contains("/messages?")) {
+                            return listResponse(getUrl());
+                        }
+                        if (getContentAsString().contains("unreachable")) {
+                            throw new IOException("connection reset");
+                        }
+                        return batchResponse(getContentAsString());
+                    }
+                };
+            }
+        };
+        GoogleClients.setDefault(new GoogleClients(transport, null, "test"));
+    }
+
+    @AfterEach
+    public void resetGmail() {
+        GoogleClients.setDefault(null);
+    }
+
+    @Test
+    public void readAllUsesOneRequestPerBatch() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            ids.add("m" + i);
+        }
+        ids.add("missing");
+
+        BatchResult<ReceivedMail> result = GmailUtils.readAll(ids);
+
+        Assertions.assertEquals(3, requestCount.get(), "121 reads should take 3 batch requests");
+        Assertions.assertEquals(120, result.getResults().size());
+        Assertions.assertEquals("subject m42", result.getResults().get("m42").getSubject());
+        Assertions.assertEquals("hello", result.getResults().get("m42").getBody());
+        Assertions.assertEquals(1, result.getFailures().size());
+        Assertions.assertTrue(result.getFailures().containsKey("missing"));
+    }
+
+    @Test
+    public void readAllReportsTheMessagesThatCannotBeParsed() throws IOException {
+        BatchResult<ReceivedMail> result = GmailUtils.readAll(List.of("m1", "broken", "m2"));
+
+        Assertions.assertEquals(List.of("m1", "m2"), new ArrayList<>(result.getSucceeded()));
+        Assertions.assertTrue(result.getFailures().get("broken") instanceof IOException,
+                String.valueOf(result.getFailures().get("broken")));
+    }
+
+    @Test
+    public void failingBatchesOnlyFailTheirOwnMessages() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            ids.add(i == 60 ? "unreachable" : "m" + i);
+        }
+
+        BatchResult<ReceivedMail> result = GmailUtils.readAll(ids);
+
+        Assertions.assertEquals(3, requestCount.get(), "the batch after the failing one should be executed");
+        Assertions.assertEquals(70, result.getResults().size());
+        Assertions.assertEquals(50, result.getFailures().size());
+        Assertions.assertTrue(result.getFailures().get("m99") instanceof IOException);
+        Assertions.assertTrue(result.getResults().containsKey("m119"));
+    }
+
+    @Test
+    public void unreachableBulkCallsReportTheirIdsAsFailed() throws IOException {
+        BatchResult<Void> result = GmailClient.getDefault().deleteAll(List.of("m1", "unreachable"));
+
+        Assertions.assertEquals(2, result.getFailures().size());
+        Assertions.assertTrue(result.getFailures().get("m1") instanceof IOException);
+    }
+
+    @Test
+    public void trashAllReportsPartialFailures() throws IOException {
+        BatchResult<Message> result = GmailUtils.trashAll(List.of("m1", "missing", "m2"));
+
+        Assertions.assertEquals(1, requestCount.get());
+        Assertions.assertEquals(List.of("m1", "m2"), new ArrayList<>(result.getSucceeded()));
+        Assertions.assertTrue(result.getFailures().get("missing").getMessage().startsWith("404"));
+    }
+
+    @Test
+    public void streamMessagesFollowsPageTokens() throws Exception {
+        List<Message> messages = GmailUtils.readMessages("INBOX", true);
+
+        Assertions.assertEquals(3, requestCount.get(), "3 pages should be listed");
+        Assertions.assertEquals(5, messages.size());
+        Assertions.assertEquals("p2-0", messages.get(4).getId());
+    }
+
+    @Test
+    public void metadataReadFetchesOnlyTheHeaders() throws IOException {
+        ReceivedMail mail = GmailUtils.read("m1",
+                ReadOptions.metadata("From", "X-Route").withFields("id,labelIds,payload/headers"));
+
+        Assertions.assertTrue(urls.get(0).contains("format=metadata"), urls.get(0));
+        Assertions.assertTrue(urls.get(0).contains("metadataHeaders=From&metadataHeaders=X-Route"), urls.get(0));
+        Assertions.assertTrue(urls.get(0).contains("fields=id,labelIds,payload/headers"), urls.get(0));
+        Assertions.assertEquals("jane@example.com", mail.getFrom());
+        Assertions.assertEquals("billing", mail.getHeader("x-route"));
+        Assertions.assertEquals(List.of("INBOX"), mail.getLabelIds());
+        Assertions.assertNull(mail.getBody());
+    }
+
+    @Test
+    public void rawMessageIsParsedFromTheMimeStream(@TempDir Path dir) throws Exception {
+        Path report = Files.writeString(dir.resolve("report.csv"), "a,b\n1,2\n");
+        Mail mail = new Mail.Builder().to("jane@example.com").subject("Monthly report")
+                .body("<p>Hello Jane</p>").attachments(report.toFile()).build();
+        Message raw = GmailUtils.convertToGmailMessage(MailBuilderUtils.buildMimeMessage(mail)).setId("m1");
+
+        ReceivedMail received = GmailUtils.getContent(raw);
+
+        Assertions.assertEquals("m1", received.getId());
+        Assertions.assertEquals("Monthly report", received.getSubject());
+        Assertions.assertEquals("Monthly report", received.getHeader("Subject"));
+        Assertions.assertArrayEquals(new String[] { "jane@example.com" }, received.getTo());
+        Assertions.assertEquals("<p>Hello Jane</p>", received.getBody());
+        Assertions.assertEquals(1, received.getAttachments().size());
+        Assertions.assertEquals("report.csv", received.getAttachments().get(0).getName());
+        Assertions.assertFalse(received.getAttachments().get(0).isLoaded(), "attachments should be decoded lazily");
+        Assertions.assertEquals("a,b\n1,2\n", new String(received.getAttachments().get(0).getData(), StandardCharsets.UTF_8));
+        Assertions.assertEquals(0, requestCount.get());
+    }
+
+    @Test
+    public void textInAnUnknownCharsetIsReadAsUtf8() throws IOException {
+        String rfc822 = "Subject: Unknown charset\r\nMIME-Version: 1.0\r\n"
+                + "Content-Type: text/plain; charset=x-unknown\r\n\r\nH\u00e9llo\r\n";
+        Message raw = new Message().setId("m1")
+                .encodeRaw(rfc822.getBytes(StandardCharsets.UTF_8));
+
+        ReceivedMail received = RawMailParser.parse(raw, -1);
+
+        Assertions.assertEquals("H\u00e9llo\r\n", received.getBody());
+    }
+
+    @Test
+    public void largeAttachmentsAreStreamedToATemporaryFile(@TempDir Path dir) throws Exception {
+        Path report = Files.writeString(dir.resolve("report.csv"), "a,b\n1,2\n");
+        Mail mail = new Mail.Builder().to("jane@example.com").subject("Monthly report")
+                .body("<p>Hello Jane</p>").attachments(report.toFile()).build();
+        Message raw = GmailUtils.convertToGmailMessage(MailBuilderUtils.buildMimeMessage(mail)).setId("m1");
+
+        Attachment attachment = RawMailParser.parse(raw, 4).getAttachments().get(0);
+        attachment.load();
+
+        try (InputStream in = attachment.getInputStream()) {
+            Assertions.assertEquals("a,b\n1,2\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        Assertions.assertEquals("a,b\n1,2\n", new String(attachment.getData(), StandardCharsets.UTF_8));
+        attachment.discard();
+    }
+
+    @Test
+    public void replacingTheDataOfASpilledAttachment(@TempDir Path dir) throws Exception {
+        Path report = Files.writeString(dir.resolve("report.csv"), "a,b\n1,2\n");
+        Mail mail = new Mail.Builder().to("jane@example.com").subject("Monthly report")
+                .body("<p>Hello Jane</p>").attachments(report.toFile()).build();
+        Message raw = GmailUtils.convertToGmailMessage(MailBuilderUtils.buildMimeMessage(mail)).setId("m1");
+
+        Attachment attachment = RawMailParser.parse(raw, 4).getAttachments().get(0);
+        attachment.load();
+        attachment.setData("c,d\n".getBytes(StandardCharsets.UTF_8));
+
+        Assertions.assertEquals("c,d\n", new String(attachment.getData(), StandardCharsets.UTF_8));
+        try (InputStream in = attachment.getInputStream()) {
+            Assertions.assertEquals("c,d\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void concurrentAttachmentDownloadsKeepThePartOrder() throws Exception {
+        AtomicInteger maxDownloading = new AtomicInteger();
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setLazyAttachments(false);
+        config.setAttachmentDownloadsPerMessage(3);
+        GmailClient client = new GoogleClients(attachmentTransport(maxDownloading), null, "test", config, "me")
+                .gmailClient();
+
+        List<Attachment> attachments = client.read("m1").getAttachments();
+
+        Assertions.assertTrue(maxDownloading.get() > 1, "the attachments should be downloaded concurrently");
+        Assertions.assertEquals(5, attachments.size());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(attachments.get(i).isLoaded());
+            Assertions.assertEquals("file" + i + ".txt", attachments.get(i).getName());
+            Assertions.assertEquals("content" + i, new String(attachments.get(i).getData(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void attachmentDownloadsFollowTheConcurrencyOfTheClient() throws Exception {
+        AtomicInteger maxDownloading = new AtomicInteger();
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setLazyAttachments(false);
+        config.setAttachmentDownloadsPerMessage(3);
+        config.setAttachmentDownloadConcurrency(1);
+        GmailClient client = new GoogleClients(attachmentTransport(maxDownloading), null, "test", config, "me")
+                .gmailClient();
+
+        Assertions.assertEquals(5, client.read("m1").getAttachments().size());
+        Assertions.assertEquals(1, maxDownloading.get(), "a single download should run at a time");
+    }
+
+    @Test
+    public void clientsAreBoundToTheirMailbox() throws Exception {
+        List<String> urls = new ArrayList<>();
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                urls.add(url);
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"labels\":[]}");
+                    }
+                };
+            }
+        };
+        GoogleWsConfig config = new GoogleWsConfig();
+        GmailClient jane = new GoogleClients(transport, null, "test", config, "jane@example.com").gmailClient();
+        GmailClient john = new GoogleClients(transport, null, "test", config, "john@example.com").gmailClient();
+
+        jane.getLabels();
+        john.getLabels();
+
+        Assertions.assertTrue(urls.get(0).contains("/users/jane@example.com/labels"), urls.get(0));
+        Assertions.assertTrue(urls.get(1).contains("/users/john@example.com/labels"), urls.get(1));
+        Assertions.assertEquals(0, requestCount.get(), "the default client should not be used");
+    }
+
+    @Test
+    public void largeMailsAreSentAsAMediaUpload() throws Exception {
+        List<MockLowLevelHttpRequest> requests = new ArrayList<>();
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setMediaSendThreshold(0);
+        GmailClient client = new GoogleClients(sendTransport(requests), null, "test", config, "me").gmailClient();
+
+        client.sendEmail(new Mail.Builder().to("jane@example.com").subject("Big report").body("<p>Hi</p>").build());
+
+        MockLowLevelHttpRequest request = requests.get(0);
+        Assertions.assertTrue(request.getUrl().contains("/upload/gmail/v1/users/me/messages/send"), request.getUrl());
+        Assertions.assertTrue(request.getUrl().contains("uploadType=media"), request.getUrl());
+        Assertions.assertEquals("message/rfc822", request.getContentType());
+        Assertions.assertTrue(request.getContentAsString().contains("Subject: Big report"), request.getContentAsString());
+    }
+
+    @Test
+    public void templateBodiesAreSentAsAMediaUpload() throws Exception {
+        List<MockLowLevelHttpRequest> requests = new ArrayList<>();
+        GmailClient client = new GoogleClients(sendTransport(requests), null, "test", new GoogleWsConfig(), "me")
+                .gmailClient();
+
+        client.sendEmail(new Mail.Builder().to("jane@example.com").subject("Party")
+                .bodyTemplate("mergeMail", Map.of("username", "blop", "event", "the party"), Locale.ENGLISH).build());
+
+        MockLowLevelHttpRequest request = requests.get(0);
+        Assertions.assertTrue(request.getUrl().contains("uploadType=media"), request.getUrl());
+        Assertions.assertTrue(request.getContentAsString().contains("blop"), request.getContentAsString());
+    }
+
+    @Test
+    public void defaultSendsShareTheSenderOfTheDefaultClient() {
+        Assertions.assertSame(GmailClient.getDefault().getMailSender(), MailSender.getDefault());
+    }
+
+    /**
+     * A message with 5 attachments, the first ones being the slowest to download.
+     */
+    private static MockHttpTransport attachmentTransport(AtomicInteger maxDownloading) {
+        AtomicInteger downloading = new AtomicInteger();
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        if (!getUrl().contains("/attachments/")) {
+                            StringBuilder parts = new StringBuilder(
+                                    "{\"mimeType\":\"text/html\",\"body\":{\"data\":\"aGVsbG8\"}}");
+                            for (int i = 0; i < 5; i++) {
+                                parts.append(",{\"mimeType\":\"text/plain\",\"filename\":\"file").append(i)
+                                        .append(".txt\",\"body\":{\"attachmentId\":\"a").append(i).append("\"}}");
+                            }
+                            return new MockLowLevelHttpResponse().setContentType("application/json")
+                                    .setContent("{\"id\":\"m1\",\"payload\":{\"mimeType\":\"multipart/mixed\","
+                                            + "\"parts\":[" + parts + "]}}");
+                        }
+                        int index = Integer.parseInt(getUrl().replaceAll(".*/attachments/a(\\d+).*", "$1"));
+                        maxDownloading.accumulateAndGet(downloading.incrementAndGet(), Math::max);
+                        try {
+                            // the first attachments are the slowest to download
+                            Thread.sleep((5 - index) * 20);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        } finally {
+                            downloading.decrementAndGet();
+                        }
+                        String data = Base64.getUrlEncoder()
+                                .encodeToString(("content" + index).getBytes(StandardCharsets.UTF_8));
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"data\":\"" + data + "\"}");
+                    }
+                };
+            }
+        };
+    }
+
+    private static MockHttpTransport sendTransport(List<MockLowLevelHttpRequest> requests) {
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                MockLowLevelHttpRequest request = new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        return new MockLowLevelHttpResponse().setContentType("application/json")
+                                .setContent("{\"id\":\"sent1\"}");
+                    }
+                };
+                requests.add(request);
+                return request;
+            }
+        };
+    }
+
+    private static MockLowLevelHttpResponse listResponse(String url) {
+        int page = url.contains("pageToken=") ? Integer.parseInt(url.replaceAll(".*pageToken=(\\d+).*", "$1")) : 0;
+        String content = page == 2 ? "{\"messages\":[{\"id\":\"p2-0\"}]}"
+                : "{\"messages\":[{\"id\":\"p" + page + "-0\"},{\"id\":\"p" + page + "-1\"}],"
+                        + "\"nextPageToken\":\"" + (page + 1) + "\"}";
+        return new MockLowLevelHttpResponse().setContentType("application/json").setContent(content);
+    }
+
+    private static MockLowLevelHttpResponse batchResponse(String batchContent) {
+        StringBuilder content = new StringBuilder();
+        Matcher matcher = MESSAGE_URL.matcher(batchContent);
+        while (matcher.find()) {
+            String id = matcher.group(1);
+            content.append("--").append(BOUNDARY).append("\r\n");
+            content.append("Content-Type: application/http\r\n\r\n");
+            if (id.startsWith("broken")) {
+                content.append("HTTP/1.1 200 OK\r\n");
+                content.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+                content.append("{\"id\":\"").append(id).append("\",\"raw\":\"not base64!\"}\r\n");
+            } else if (id.startsWith("missing")) {
+                content.append("HTTP/1.1 404 Not Found\r\n");
+                content.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+                content.append("{\"error\":{\"code\":404,\"message\":\"Not Found\"}}\r\n");
+            } else {
+                content.append("HTTP/1.1 200 OK\r\n");
+                content.append("Content-Type: application/json; charset=UTF-8\r\n\r\n");
+                content.append("{\"id\":\"").append(id).append("\",\"payload\":{\"mimeType\":\"text/plain\",")
+                        .append("\"headers\":[{\"name\":\"Subject\",\"value\":\"subject ").append(id)
+                        .append("\"}],\"body\":{\"data\":\"aGVsbG8\"}}}\r\n");
+            }
+        }
+        content.append("--").append(BOUNDARY).append("--\r\n");
+        return new MockLowLevelHttpResponse().setContentType("multipart/mixed; boundary=" + BOUNDARY)
+                .setContent(content.toString());
+    }
+}
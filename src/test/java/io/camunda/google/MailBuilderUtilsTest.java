@@ -1,20 +1,35 @@
 package io.camunda.google;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
 import javax.mail.Part;
+import javax.mail.internet.AddressException;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.exceptions.TemplateInputException;
 
 import io.camunda.google.model.Mail;
 
@@ -67,5 +82,99 @@ public class MailBuilderUtilsTest {
             }
         }
     }
-    
+
+    @Test
+    public void concurrentTemplateEngineAccess() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<TemplateEngine>> engines = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                engines.add(executor.submit(() -> {
+                    start.await();
+                    return MailBuilderUtils.getTemplateEngine();
+                }));
+            }
+            start.countDown();
+            TemplateEngine first = engines.get(0).get();
+            for (Future<TemplateEngine> engine : engines) {
+                Assertions.assertSame(first, engine.get(), "a single template engine should be built");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void preloadedTemplatesAreCachedUntilCleared() {
+        MailBuilderUtils.clearTemplateCache();
+        MailBuilderUtils.preloadTemplates(List.of("testMail"), List.of(Locale.ENGLISH));
+
+        Assertions.assertEquals(1, templateCacheSize(), "the parsed template should be cached");
+
+        MailBuilderUtils.clearTemplateCacheFor("testMail");
+
+        Assertions.assertEquals(0, templateCacheSize(), "the template should be reloaded on its next use");
+    }
+
+    @Test
+    public void cachedTemplatesExpireAfterTheirTtl() throws InterruptedException {
+        MailBuilderUtils.setTemplateCacheTtlMillis(1);
+        MailBuilderUtils.configure();
+        try {
+            MailBuilderUtils.preloadTemplates(List.of("testMail"), List.of(Locale.ENGLISH));
+            ICache<TemplateCacheKey, TemplateModel> cache = MailBuilderUtils.getTemplateEngine().getCacheManager()
+                    .getTemplateCache();
+            TemplateCacheKey key = cache.keySet().iterator().next();
+            Thread.sleep(20);
+
+            Assertions.assertNull(cache.get(key), "the template should be reloaded once expired");
+        } finally {
+            MailBuilderUtils.setTemplateCacheTtlMillis(-1);
+            MailBuilderUtils.configure();
+        }
+    }
+
+    @Test
+    public void preloadingAMissingTemplateFails() {
+        Assertions.assertThrows(TemplateInputException.class,
+                () -> MailBuilderUtils.preloadTemplates(List.of("missing"), List.of(Locale.ENGLISH)));
+    }
+
+    private static int templateCacheSize() {
+        return MailBuilderUtils.getTemplateEngine().getCacheManager().getTemplateCache().keySet().size();
+    }
+
+    @Test
+    public void templateBodyIsRenderedWhileTheMessageIsWritten() throws MessagingException, IOException {
+        Mail mail = new Mail.Builder().to("tata@tata.com").subject("sub")
+                .bodyTemplate("mergeMail", Map.of("username", "blop", "event", "the party"), Locale.ENGLISH).build();
+        MimeMessage mimeMessage = MailBuilderUtils.buildMimeMessage(mail);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        mimeMessage.writeTo(out);
+        String raw = out.toString(StandardCharsets.US_ASCII);
+
+        Assertions.assertTrue(raw.contains("Content-Transfer-Encoding: quoted-printable"), raw);
+        Assertions.assertTrue(raw.contains("Content-Type: text/html; charset=UTF-8"), raw);
+        Assertions.assertTrue(raw.contains("Welcome to <span>the party</span>, <span>blop</span>."), raw);
+        Assertions.assertTrue(((String) mimeMessage.getContent()).contains("Hi <span>blop</span>"));
+    }
+
+    @Test
+    public void factoryReusesItsSessionAndParsedRecipients() throws MessagingException, IOException {
+        MimeMessageFactory factory = new MimeMessageFactory(new Properties(), 10);
+        Mail first = new Mail.Builder().to("tata@tata.com", "Toto <toto@toto.com>").subject("first").body("body").build();
+        Mail second = new Mail.Builder().to("tata@tata.com", "Toto <toto@toto.com>").subject("second").body("body").build();
+
+        MimeMessage firstMessage = factory.createMimeMessage(first);
+        MimeMessage secondMessage = factory.createMimeMessage(second);
+
+        Assertions.assertSame(factory.getSession(), secondMessage.getSession());
+        Assertions.assertEquals("me", secondMessage.getFrom()[0].toString());
+        Assertions.assertArrayEquals(firstMessage.getAllRecipients(), secondMessage.getAllRecipients());
+        Assertions.assertEquals("Toto <toto@toto.com>", secondMessage.getAllRecipients()[1].toString());
+        Assertions.assertThrows(AddressException.class,
+                () -> factory.createMimeMessage(new Mail.Builder().to("a@a.com, b@b.com").subject("s").body("b").build()));
+    }
 }
@@ -0,0 +1,45 @@
+package io.camunda.google;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.camunda.google.model.Mail;
+
+public class MailMergeTest {
+
+    private final MailMerge merge = new MailMerge("mergeMail", Locale.ENGLISH, Map.of("event", "CamundaCon"),
+            Set.of("username"));
+
+    @Test
+    public void recipientVariablesAreEscapedLikeThText() {
+        String body = merge.render(Map.of("username", "<Bob & Co>"));
+
+        String expected = MailBuilderUtils.buildMailBody("mergeMail",
+                Map.of("event", "CamundaCon", "username", "<Bob & Co>"), Locale.ENGLISH);
+        Assertions.assertEquals(expected, body);
+        Assertions.assertTrue(body.contains("Hi <span>&lt;Bob &amp; Co&gt;</span>"), body);
+    }
+
+    @Test
+    public void mailsAreBuiltPerRecipient() {
+        Stream<Map<String, Object>> recipients = Stream.of(
+                Map.of("email", "ann@example.com", "username", "Ann"),
+                Map.of("email", "bob@example.com", "username", "Bob"));
+
+        List<Mail> mails = merge
+                .merge(recipients, vars -> new Mail.Builder().to((String) vars.get("email")).subject("Welcome"))
+                .collect(Collectors.toList());
+
+        Assertions.assertEquals("ann@example.com", mails.get(0).getTo()[0]);
+        Assertions.assertTrue(mails.get(0).getBody().contains("Welcome to <span>CamundaCon</span>, <span>Ann</span>."),
+                mails.get(0).getBody());
+        Assertions.assertTrue(mails.get(1).getBody().contains("Hi <span>Bob</span>"), mails.get(1).getBody());
+    }
+}
@@ -0,0 +1,134 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.mail.internet.AddressException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.gmail.model.Message;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.Mail;
+
+public class MailSenderTest {
+
+    private static final Pattern SUBJECT = Pattern.compile("Subject: (\\S+)");
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private MailSender sender;
+
+    @AfterEach
+    public void shutdownSender() {
+        if (sender != null) {
+            sender.shutdown();
+        }
+    }
+
+    @Test
+    public void futuresFollowTheOrderOfTheMails() throws Exception {
+        sender = new MailSender(gmailClient(new GoogleWsConfig()));
+        List<Mail> mails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            mails.add(new Mail.Builder().to("jane@example.com").subject("mail" + i).body("<p>Hi</p>").build());
+        }
+
+        List<CompletableFuture<String>> ids = sender.sendAll(mails);
+
+        Assertions.assertEquals(20, ids.size());
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals("sent-mail" + i, ids.get(i).get());
+        }
+    }
+
+    @Test
+    public void failuresCompleteTheirOwnFuture() throws Exception {
+        sender = new MailSender(gmailClient(new GoogleWsConfig()));
+
+        List<CompletableFuture<String>> ids = sender.sendAll(List.of(
+                new Mail.Builder().to("jane@example.com").subject("ok").body("<p>Hi</p>").build(),
+                new Mail.Builder().to("jane@example.com").subject("rejected").body("<p>Hi</p>").build(),
+                new Mail.Builder().to("not an address").subject("unbuilt").body("<p>Hi</p>").build()));
+
+        Assertions.assertEquals("sent-ok", ids.get(0).get());
+        ExecutionException rejected = Assertions.assertThrows(ExecutionException.class, () -> ids.get(1).get());
+        Assertions.assertTrue(rejected.getCause() instanceof GoogleJsonResponseException, rejected.toString());
+        ExecutionException unbuilt = Assertions.assertThrows(ExecutionException.class, () -> ids.get(2).get());
+        Assertions.assertTrue(unbuilt.getCause() instanceof AddressException, unbuilt.toString());
+    }
+
+    @Test
+    public void pendingSendsAreBounded() throws Exception {
+        GoogleWsConfig config = new GoogleWsConfig();
+        config.setSendConcurrency(8);
+        config.setSendRatePerSecond(0);
+        config.setMaxPendingSends(2);
+        sender = new MailSender(gmailClient(config));
+        List<Mail> mails = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            mails.add(new Mail.Builder().to("jane@example.com").subject("mail" + i).body("<p>Hi</p>").build());
+        }
+
+        List<CompletableFuture<String>> ids = sender.sendAll(mails);
+        CompletableFuture.allOf(ids.toArray(new CompletableFuture[0])).get();
+
+        Assertions.assertTrue(maxInFlight.get() <= 2, "at most 2 mails should be pending, got " + maxInFlight.get());
+    }
+
+    private GmailClient gmailClient(GoogleWsConfig config) {
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(10);
+                            return sendResponse(subject(getContentAsString()));
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                };
+            }
+        };
+        return new GoogleClients(transport, null, "test", config, "me").gmailClient();
+    }
+
+    private static String subject(String content) throws IOException {
+        Message message = GoogleAuthUtils.JSON_FACTORY.fromString(content, Message.class);
+        Matcher matcher = SUBJECT.matcher(new String(message.decodeRaw(), StandardCharsets.UTF_8));
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static MockLowLevelHttpResponse sendResponse(String subject) {
+        if ("rejected".equals(subject)) {
+            return new MockLowLevelHttpResponse().setStatusCode(400).setContentType("application/json")
+                    .setContent("{\"error\":{\"code\":400,\"message\":\"Invalid To header\"}}");
+        }
+        return new MockLowLevelHttpResponse().setContentType("application/json")
+                .setContent("{\"id\":\"sent-" + subject + "\"}");
+    }
+}
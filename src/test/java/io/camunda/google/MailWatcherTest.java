@@ -0,0 +1,158 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.MailNotification;
+import io.camunda.google.model.MailboxChanges;
+
+public class MailWatcherTest {
+
+    private final List<String> urls = new CopyOnWriteArrayList<>();
+
+    private final List<String> pubSubCalls = new CopyOnWriteArrayList<>();
+
+    @Test
+    public void notificationsTriggerAHistorySync() throws Exception {
+        GmailClient client = new GoogleClients(transport(), null, "test", new GoogleWsConfig(), "me").gmailClient();
+        MailboxSync sync = new MailboxSync(client, "INBOX",
+                new MemoryDataStoreFactory().getDataStore(MailboxSync.CHECKPOINT_STORE_ID));
+        InMemoryNotificationSource source = new InMemoryNotificationSource();
+        BlockingQueue<MailboxChanges> delivered = new LinkedBlockingQueue<>();
+
+        MailWatcher watcher = new MailWatcher(client, "projects/p/topics/gmail", "INBOX", sync, source,
+                delivered::add);
+        watcher.start();
+        try {
+            MailboxChanges initial = delivered.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(initial);
+            Assertions.assertTrue(initial.isFullSync(), "the first changes should come from a full sync");
+
+            source.publish("someone.else@example.com", BigInteger.valueOf(101));
+            source.publish("JANE@example.com", BigInteger.valueOf(101));
+            MailboxChanges changes = delivered.poll(5, TimeUnit.SECONDS);
+
+            Assertions.assertNotNull(changes, "the notification should be delivered");
+            Assertions.assertFalse(changes.isFullSync());
+            Assertions.assertEquals("m3", changes.getAdded().get(0).getId());
+        } finally {
+            watcher.close();
+        }
+        Assertions.assertTrue(urls.stream().anyMatch(url -> url.endsWith("/watch")));
+        Assertions.assertTrue(urls.stream().anyMatch(url -> url.endsWith("/stop")));
+    }
+
+    @Test
+    public void pubSubMessagesArePulledAndAcknowledged() throws Exception {
+        GoogleClients clients = new GoogleClients(transport(), null, "test");
+        PubSubNotificationSource source = new PubSubNotificationSource(clients, "projects/p/subscriptions/gmail");
+
+        List<MailNotification> notifications = source.poll(1, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(2, notifications.size());
+        Assertions.assertEquals("jane@example.com", notifications.get(0).getEmailAddress());
+        Assertions.assertEquals(BigInteger.valueOf(1234), notifications.get(0).getHistoryId());
+        Assertions.assertFalse(urls.stream().anyMatch(url -> url.endsWith(":acknowledge")),
+                "only the consumed notifications should be acknowledged");
+
+        source.acknowledge(notifications);
+
+        Assertions.assertTrue(urls.contains(
+                "https://pubsub.googleapis.com/v1/projects/p/subscriptions/gmail:acknowledge"));
+    }
+
+    @Test
+    public void notificationsOfOtherMailboxesAreReleasedAtOnce() throws Exception {
+        GoogleClients clients = new GoogleClients(transport(), null, "test", new GoogleWsConfig(), "me");
+        MailboxSync sync = new MailboxSync(clients.gmailClient(), "INBOX",
+                new MemoryDataStoreFactory().getDataStore(MailboxSync.CHECKPOINT_STORE_ID));
+        PubSubNotificationSource source = new PubSubNotificationSource(clients, "projects/p/subscriptions/gmail");
+
+        MailWatcher watcher = new MailWatcher(clients.gmailClient(), "projects/p/topics/gmail", "INBOX", sync, source,
+                changes -> {
+                });
+        watcher.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pubSubCalls.stream().noneMatch(call -> call.startsWith("modifyAckDeadline"))
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        } finally {
+            watcher.close();
+        }
+
+        String release = pubSubCalls.stream().filter(call -> call.startsWith("modifyAckDeadline")).findFirst()
+                .orElseThrow();
+        Assertions.assertTrue(release.contains("\"a2\"") && release.contains("\"ackDeadlineSeconds\":0"), release);
+        Assertions.assertFalse(release.contains("\"a1\""), release);
+        String acknowledge = pubSubCalls.stream().filter(call -> call.startsWith("acknowledge")).findFirst()
+                .orElseThrow();
+        Assertions.assertTrue(acknowledge.contains("\"a1\"") && !acknowledge.contains("\"a2\""), acknowledge);
+    }
+
+    private static String received(String ackId, String emailAddress) {
+        String data = Base64.getEncoder().encodeToString(
+                ("{\"emailAddress\":\"" + emailAddress + "\",\"historyId\":1234}").getBytes(StandardCharsets.UTF_8));
+        return "{\"ackId\":\"" + ackId + "\",\"message\":{\"data\":\"" + data + "\"}}";
+    }
+
+    private MockHttpTransport transport() {
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                urls.add(url);
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() throws IOException {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+                                .setContentType("application/json");
+                        if (getUrl().startsWith(PubSubNotificationSource.PUBSUB_ROOT_URL)) {
+                            pubSubCalls.add(getUrl().substring(getUrl().lastIndexOf(':') + 1) + " "
+                                    + getContentAsString());
+                        }
+                        if (getUrl().endsWith(":pull")) {
+                            return response.setContent("{\"receivedMessages\":["
+                                    + received("a1", "jane@example.com") + ","
+                                    + received("a2", "someone.else@example.com") + "]}");
+                        }
+                        if (getUrl().endsWith(":acknowledge") || getUrl().endsWith(":modifyAckDeadline")
+                                || getUrl().endsWith("/stop")) {
+                            return response.setContent("{}");
+                        }
+                        if (getUrl().contains("/profile")) {
+                            return response.setContent("{\"emailAddress\":\"jane@example.com\",\"historyId\":\"100\"}");
+                        }
+                        if (getUrl().endsWith("/watch")) {
+                            return response.setContent("{\"historyId\":\"100\",\"expiration\":\""
+                                    + (System.currentTimeMillis() + TimeUnit.DAYS.toMillis(7)) + "\"}");
+                        }
+                        if (getUrl().contains("/history")) {
+                            return response.setContent("{\"historyId\":\"101\",\"history\":[{\"id\":\"101\","
+                                    + "\"messagesAdded\":[{\"message\":{\"id\":\"m3\"}}]}]}");
+                        }
+                        return response.setContent("{\"messages\":[{\"id\":\"m1\"}]}");
+                    }
+                };
+            }
+        };
+    }
+}
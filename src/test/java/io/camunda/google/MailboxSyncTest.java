@@ -0,0 +1,116 @@
+package io.camunda.google;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+import com.google.api.services.gmail.model.Message;
+
+import io.camunda.google.config.GoogleWsConfig;
+import io.camunda.google.model.MailboxChanges;
+
+public class MailboxSyncTest {
+
+    private static final String HISTORY = "{\"historyId\":\"105\",\"history\":["
+            + "{\"id\":\"101\",\"messagesAdded\":[{\"message\":{\"id\":\"m3\"}}]},"
+            + "{\"id\":\"102\",\"messagesDeleted\":[{\"message\":{\"id\":\"m1\"}}]},"
+            + "{\"id\":\"103\",\"labelsAdded\":[{\"message\":{\"id\":\"m2\"},\"labelIds\":[\"STARRED\",\"IMPORTANT\"]}]},"
+            + "{\"id\":\"104\",\"labelsRemoved\":[{\"message\":{\"id\":\"m2\"},\"labelIds\":[\"IMPORTANT\"]}]},"
+            + "{\"id\":\"105\",\"messagesAdded\":[{\"message\":{\"id\":\"m4\"}}],"
+            + "\"messagesDeleted\":[{\"message\":{\"id\":\"m4\"}}]}]}";
+
+    private final List<String> urls = new ArrayList<>();
+
+    private boolean historyExpired;
+
+    private MailboxSync sync;
+
+    private DataStore<String> checkpoints;
+
+    @BeforeEach
+    public void mockGmail() throws IOException {
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                urls.add(url);
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+                                .setContentType("application/json");
+                        if (getUrl().contains("/profile")) {
+                            return response.setContent("{\"emailAddress\":\"jane@example.com\",\"historyId\":\"100\"}");
+                        }
+                        if (getUrl().contains("/history") && historyExpired) {
+                            return response.setStatusCode(404).setContent("{\"error\":{\"code\":404}}");
+                        }
+                        if (getUrl().contains("/history")) {
+                            return response.setContent(HISTORY);
+                        }
+                        return response.setContent("{\"messages\":[{\"id\":\"m1\"},{\"id\":\"m2\"}]}");
+                    }
+                };
+            }
+        };
+        checkpoints = new MemoryDataStoreFactory().getDataStore(MailboxSync.CHECKPOINT_STORE_ID);
+        GmailClient client = new GoogleClients(transport, null, "test", new GoogleWsConfig(), "me").gmailClient();
+        sync = new MailboxSync(client, "INBOX", checkpoints);
+    }
+
+    @Test
+    public void firstPollListsTheLabel() throws IOException {
+        MailboxChanges changes = sync.poll();
+
+        Assertions.assertTrue(changes.isFullSync());
+        Assertions.assertEquals(List.of("m1", "m2"), ids(changes.getAdded()));
+        Assertions.assertEquals("100", checkpoints.get("jane@example.com:INBOX"));
+    }
+
+    @Test
+    public void nextPollsOnlyReturnTheChanges() throws IOException {
+        sync.poll();
+        urls.clear();
+
+        MailboxChanges changes = sync.poll();
+
+        Assertions.assertFalse(changes.isFullSync());
+        Assertions.assertTrue(urls.get(0).contains("startHistoryId=100"), urls.get(0));
+        Assertions.assertEquals(List.of("m3"), ids(changes.getAdded()), "m4 was added then deleted");
+        Assertions.assertEquals(List.of("m1"), changes.getDeleted());
+        Assertions.assertEquals(Map.of("m2", List.of("STARRED")), changes.getLabelsAdded());
+        Assertions.assertTrue(changes.getLabelsRemoved().isEmpty(), "IMPORTANT was added then removed");
+        Assertions.assertEquals(BigInteger.valueOf(105), changes.getHistoryId());
+        Assertions.assertEquals("105", checkpoints.get("jane@example.com:INBOX"));
+    }
+
+    @Test
+    public void expiredHistoryFallsBackToFullSync() throws IOException {
+        checkpoints.set("jane@example.com:INBOX", "1");
+        historyExpired = true;
+
+        MailboxChanges changes = sync.fetchChanges();
+
+        Assertions.assertTrue(changes.isFullSync());
+        Assertions.assertEquals(2, changes.getAdded().size());
+        Assertions.assertEquals("1", checkpoints.get("jane@example.com:INBOX"), "fetching should not commit");
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        messages.forEach(message -> ids.add(message.getId()));
+        return ids;
+    }
+}
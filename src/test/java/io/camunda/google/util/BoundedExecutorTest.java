@@ -0,0 +1,52 @@
+package io.camunda.google.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BoundedExecutorTest {
+
+    @Test
+    public void platformThreadsRunAtMostMaxConcurrencyTasks() throws InterruptedException {
+        assertBounded(new BoundedExecutor("test", 3, false));
+    }
+
+    @Test
+    public void virtualThreadsRunAtMostMaxConcurrencyTasks() throws InterruptedException {
+        assertBounded(new BoundedExecutor("test", 3, true));
+    }
+
+    @Test
+    public void maxConcurrencyMustBePositive() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BoundedExecutor("test", 0, false));
+    }
+
+    private static void assertBounded(BoundedExecutor executor) throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(20);
+        try {
+            for (int i = 0; i < 20; i++) {
+                executor.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+
+            Assertions.assertTrue(done.await(10, TimeUnit.SECONDS), "all the tasks should run");
+            Assertions.assertEquals(3, maxRunning.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.camunda.google.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LazyHolderTest {
+
+    private static final int THREADS = 64;
+
+    @Test
+    public void concurrentFirstCallBuildsOnce() throws Exception {
+        AtomicInteger constructions = new AtomicInteger();
+        LazyHolder<Object> holder = new LazyHolder<>(() -> {
+            constructions.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Object();
+        });
+
+        List<Object> values = hammer(holder::get);
+
+        Assertions.assertEquals(1, constructions.get(), "value should be built once");
+        for (Object value : values) {
+            Assertions.assertSame(values.get(0), value, "all threads should get the same instance");
+        }
+    }
+
+    @Test
+    public void resetBuildsAgain() {
+        AtomicInteger constructions = new AtomicInteger();
+        LazyHolder<Integer> holder = new LazyHolder<>(constructions::incrementAndGet);
+
+        Assertions.assertEquals(1, holder.get());
+        Assertions.assertEquals(1, holder.get());
+        holder.reset();
+        Assertions.assertFalse(holder.isInitialized());
+        Assertions.assertEquals(2, holder.get());
+        holder.set(42);
+        Assertions.assertEquals(42, holder.get());
+        Assertions.assertEquals(2, constructions.get());
+    }
+
+    static <T> List<T> hammer(Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.camunda.google.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void acquisitionsBeyondTheBurstAreThrottled() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(20, 1);
+
+        long start = System.nanoTime();
+        Assertions.assertEquals(0, rateLimiter.acquire(), "the burst should be served at once");
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertTrue(elapsedMillis >= 200, "5 permits at 20/s should take 250ms, took " + elapsedMillis);
+    }
+
+    @Test
+    public void disabledRateNeverWaits() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(0);
+
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(0, rateLimiter.acquire());
+        }
+    }
+
+    @Test
+    public void rateChangesApplyToTheNextAcquisitions() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(0);
+        rateLimiter.acquire(10);
+
+        rateLimiter.setPermitsPerSecond(10);
+
+        Assertions.assertTrue(rateLimiter.acquire(2) > 0, "the permits should be reserved in advance");
+        Assertions.assertEquals(10, rateLimiter.getPermitsPerSecond());
+    }
+}
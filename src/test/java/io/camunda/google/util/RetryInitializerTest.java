@@ -0,0 +1,110 @@
+package io.camunda.google.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+public class RetryInitializerTest {
+
+    private static final GenericUrl GMAIL_URL = new GenericUrl("https://www.googleapis.com/gmail/v1/users/me/labels");
+
+    private static final String RATE_LIMIT_ERROR = "{\"error\":{\"code\":403,\"message\":\"User Rate Limit Exceeded\","
+            + "\"errors\":[{\"reason\":\"userRateLimitExceeded\"}]}}";
+
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Test
+    public void quotaErrorsAreRetriedAfterTheGivenDelay() throws IOException {
+        RetryInitializer retry = new RetryInitializer(null, 60000, Map.of("gmail", 100.0))
+                .setSleeper(sleeps::add);
+        MockHttpTransport transport = transport(
+                new MockLowLevelHttpResponse().setStatusCode(429).addHeader("Retry-After", "2"),
+                new MockLowLevelHttpResponse().setStatusCode(403).setContentType("application/json")
+                        .setContent(RATE_LIMIT_ERROR),
+                new MockLowLevelHttpResponse().setContent("{}"));
+
+        Assertions.assertEquals(200,
+                transport.createRequestFactory(retry).buildGetRequest(GMAIL_URL).execute().getStatusCode());
+
+        Assertions.assertEquals(2, retry.getThrottledCount());
+        Assertions.assertEquals(2, retry.getRetriedCount());
+        Assertions.assertEquals(2000, sleeps.get(0), "Retry-After should be honored");
+        Assertions.assertTrue(retry.getRateLimiter("gmail").getPermitsPerSecond() < 100,
+                "the rate should be lowered after quota errors");
+    }
+
+    @Test
+    public void otherClientErrorsAreNotRetried() {
+        RetryInitializer retry = new RetryInitializer(null, 60000).setSleeper(sleeps::add);
+        MockHttpTransport transport = transport(new MockLowLevelHttpResponse().setStatusCode(403)
+                .setContentType("application/json").setContent("{\"error\":{\"message\":\"Insufficient Permission\"}}"));
+
+        HttpResponseException e = Assertions.assertThrows(HttpResponseException.class,
+                () -> transport.createRequestFactory(retry).buildGetRequest(GMAIL_URL).execute());
+
+        Assertions.assertTrue(e.getContent().contains("Insufficient Permission"), "the error should stay readable");
+        Assertions.assertEquals(0, retry.getThrottledCount());
+        Assertions.assertEquals(0, retry.getRetriedCount());
+    }
+
+    @Test
+    public void serverErrorsAreOnlyRetriedForIdempotentMethods() throws IOException {
+        RetryInitializer retry = new RetryInitializer(null, 60000).setSleeper(sleeps::add);
+        MockHttpTransport transport = transport(new MockLowLevelHttpResponse().setStatusCode(503),
+                new MockLowLevelHttpResponse().setContent("{}"));
+        GenericUrl sendUrl = new GenericUrl("https://www.googleapis.com/gmail/v1/users/me/messages/send");
+
+        HttpResponseException e = Assertions.assertThrows(HttpResponseException.class,
+                () -> transport.createRequestFactory(retry)
+                        .buildPostRequest(sendUrl, new ByteArrayContent("application/json", new byte[0])).execute());
+
+        Assertions.assertEquals(503, e.getStatusCode());
+        Assertions.assertEquals(0, retry.getRetriedCount(), "a send may have been processed, it should not be retried");
+
+        MockHttpTransport getTransport = transport(new MockLowLevelHttpResponse().setStatusCode(503),
+                new MockLowLevelHttpResponse().setContent("{}"));
+        Assertions.assertEquals(200,
+                getTransport.createRequestFactory(retry).buildGetRequest(GMAIL_URL).execute().getStatusCode());
+        Assertions.assertEquals(1, retry.getRetriedCount());
+    }
+
+    @Test
+    public void apiIsTakenFromTheUrl() {
+        Assertions.assertEquals("gmail", RetryInitializer.api(GMAIL_URL));
+        Assertions.assertEquals("gmail", RetryInitializer.api(new GenericUrl("https://www.googleapis.com/batch/gmail/v1")));
+        Assertions.assertEquals("drive",
+                RetryInitializer.api(new GenericUrl("https://www.googleapis.com/upload/drive/v3/files")));
+        Assertions.assertEquals("sheets",
+                RetryInitializer.api(new GenericUrl("https://sheets.googleapis.com/v4/spreadsheets/id")));
+    }
+
+    private static MockHttpTransport transport(MockLowLevelHttpResponse... responses) {
+        Deque<MockLowLevelHttpResponse> pending = new ConcurrentLinkedDeque<>(List.of(responses));
+        return new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        return pending.size() > 1 ? pending.poll() : pending.peek();
+                    }
+                };
+            }
+        };
+    }
+}